@@ -0,0 +1,91 @@
+package tourGuide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.service.AttractionCatalog;
+import tourGuide.service.RewardPointsBatcher;
+import tourGuide.service.RewardPointsCache;
+import tourGuide.service.RewardsService;
+
+/**
+ * Fixed datasets for the benchmarks: everything is drawn from seeded random streams, so that every run
+ * and every commit measures the same data.
+ * Attractions and locations are spread over the continental United States, like the attractions of the
+ * GPS service; half of the visited locations are a few miles from an attraction, so that rewards are found.
+ */
+final class BenchmarkData {
+
+	static final long SEED = 20200101L;
+	// Reference time of the visited locations, fixed for reproducibility
+	private static final long REFERENCE_TIME = 1577836800000L;
+
+	private static final double MIN_LATITUDE = 25;
+	private static final double MAX_LATITUDE = 49;
+	private static final double MIN_LONGITUDE = -125;
+	private static final double MAX_LONGITUDE = -67;
+	// About 5 miles
+	private static final double NEAR_DEGREES = 0.07;
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * @return settings that keep every downstream call in memory and synchronous: no catalog refresh, no reward batching
+	 */
+	static TourGuideProperties properties() {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getAttractions().setRefreshIntervalSeconds(0);
+		properties.getRewards().setBatchEnabled(false);
+		return properties;
+	}
+
+	static List<Attraction> attractions(int count) {
+		SplittableRandom random = new SplittableRandom(SEED);
+		List<Attraction> attractions = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			Attraction attraction = new Attraction("Attraction " + i, "City " + i, "ST",
+					random.nextDouble(MIN_LATITUDE, MAX_LATITUDE), random.nextDouble(MIN_LONGITUDE, MAX_LONGITUDE));
+			attraction.attractionId = new UUID(random.nextLong(), random.nextLong());
+			attractions.add(attraction);
+		}
+		return attractions;
+	}
+
+	static List<VisitedLocation> visitedLocations(UUID userId, List<Attraction> attractions, int count, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<VisitedLocation> visitedLocations = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			Location location;
+			if(random.nextBoolean()) {
+				Attraction attraction = attractions.get(random.nextInt(attractions.size()));
+				location = new Location(attraction.latitude + random.nextDouble(-NEAR_DEGREES, NEAR_DEGREES),
+						attraction.longitude + random.nextDouble(-NEAR_DEGREES, NEAR_DEGREES));
+			} else {
+				location = new Location(random.nextDouble(MIN_LATITUDE, MAX_LATITUDE), random.nextDouble(MIN_LONGITUDE, MAX_LONGITUDE));
+			}
+			visitedLocations.add(new VisitedLocation(userId, location, new Date(REFERENCE_TIME - random.nextLong(TimeUnit.DAYS.toMillis(30)))));
+		}
+		return visitedLocations;
+	}
+
+	static RewardsService rewardsService(BenchmarkGateway gateway, TourGuideProperties properties) {
+		AttractionCatalog attractionCatalog = new AttractionCatalog(gateway, properties);
+		// The catalog loads in the background: measure against the loaded attractions
+		try {
+			attractionCatalog.awaitFirstLoadAttempt(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return new RewardsService(gateway, attractionCatalog,
+				new RewardPointsCache(new RewardPointsBatcher(gateway, properties), properties));
+	}
+}
@@ -0,0 +1,72 @@
+package tourGuide.benchmark;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.RewardPointsRequest;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+
+/**
+ * Downstream services answered in memory, so that the benchmarks measure TourGuide and not the network.
+ * Reward points are derived from the ids: the same pair always gets the same points.
+ */
+class BenchmarkGateway extends DownstreamGateway {
+
+	private final List<Attraction> attractions;
+
+	BenchmarkGateway(List<Attraction> attractions, TourGuideProperties properties) {
+		super(properties);
+		this.attractions = attractions;
+	}
+
+	@Override
+	public DownstreamResult<List<Attraction>> getAttractions() {
+		return DownstreamResult.success(new ArrayList<>(attractions));
+	}
+
+	@Override
+	public DownstreamResult<VisitedLocation> getUserLocation(UUID userId) {
+		return DownstreamResult.success(new VisitedLocation(userId, new Location(33.817595, -117.922008), new Date()));
+	}
+
+	@Override
+	public CompletableFuture<DownstreamResult<VisitedLocation>> getUserLocationAsync(UUID userId) {
+		return CompletableFuture.completedFuture(getUserLocation(userId));
+	}
+
+	@Override
+	public DownstreamResult<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+		return DownstreamResult.success(rewardPoints(attractionId, userId));
+	}
+
+	@Override
+	public CompletableFuture<DownstreamResult<Integer>> getRewardPointsAsync(UUID attractionId, UUID userId) {
+		return CompletableFuture.completedFuture(getRewardPoints(attractionId, userId));
+	}
+
+	@Override
+	public int[] getRewardPointsBatch(List<RewardPointsRequest> requests) {
+		int[] rewardPoints = new int[requests.size()];
+		for(int i = 0; i < rewardPoints.length; i++) {
+			rewardPoints[i] = rewardPoints(requests.get(i).attractionId, requests.get(i).userId);
+		}
+		return rewardPoints;
+	}
+
+	@Override
+	public CompletableFuture<int[]> getRewardPointsBatchAsync(List<RewardPointsRequest> requests) {
+		return CompletableFuture.completedFuture(getRewardPointsBatch(requests));
+	}
+
+	private static int rewardPoints(UUID attractionId, UUID userId) {
+		return 1 + Math.floorMod(31 * attractionId.hashCode() + userId.hashCode(), 1000);
+	}
+}
@@ -0,0 +1,89 @@
+package tourGuide.benchmark;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.geo.AttractionIndex;
+import tourGuide.service.RewardsService;
+
+/**
+ * RewardsService.getDistance and nearAttraction for one pair, and the attractions near one location found by
+ * calling nearAttraction on each of them versus the attraction index
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistanceBenchmark {
+
+	private static final int LOCATIONS = 1024;
+
+	@Param({ "26", "1000", "10000" })
+	public int attractionCount;
+
+	private RewardsService rewardsService;
+	private Attraction[] attractions;
+	private VisitedLocation[] visitedLocations;
+	private AttractionIndex attractionIndex;
+	private int[] positions;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		TourGuideProperties properties = BenchmarkData.properties();
+		List<Attraction> attractionList = BenchmarkData.attractions(attractionCount);
+		rewardsService = BenchmarkData.rewardsService(new BenchmarkGateway(attractionList, properties), properties);
+		attractions = attractionList.toArray(new Attraction[0]);
+		visitedLocations = BenchmarkData.visitedLocations(new UUID(0, 1), attractionList, LOCATIONS, BenchmarkData.SEED).toArray(new VisitedLocation[0]);
+		attractionIndex = new AttractionIndex(attractionList);
+		positions = new int[attractionIndex.size()];
+	}
+
+	@Benchmark
+	public double getDistance() {
+		int i = next++ & (LOCATIONS - 1);
+		return rewardsService.getDistance(attractions[i % attractions.length], visitedLocations[i].location);
+	}
+
+	@Benchmark
+	public boolean nearAttraction() {
+		int i = next++ & (LOCATIONS - 1);
+		return rewardsService.nearAttraction(visitedLocations[i], attractions[i % attractions.length]);
+	}
+
+	@Benchmark
+	public int nearAttractionScan() {
+		VisitedLocation visitedLocation = visitedLocations[next++ & (LOCATIONS - 1)];
+		int count = 0;
+		for(Attraction attraction : attractions) {
+			if(rewardsService.nearAttraction(visitedLocation, attraction)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Benchmark
+	public int nearAttractionIndex() {
+		VisitedLocation visitedLocation = visitedLocations[next++ & (LOCATIONS - 1)];
+		return attractionIndex.withinRadius(visitedLocation.location, 10, positions);
+	}
+}
@@ -0,0 +1,73 @@
+package tourGuide.benchmark;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.NearbyAttraction;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.service.TourGuideService;
+
+/**
+ * TourGuideService.getNearByAttractions: ranking of the closest attractions and their reward points,
+ * served by the cache once every location has been seen
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NearbyAttractionsBenchmark {
+
+	private static final int LOCATIONS = 1024;
+
+	@Param({ "26", "1000", "10000" })
+	public int attractionCount;
+
+	@Param({ "5", "20" })
+	public int numberOfAttractions;
+
+	private TourGuideService tourGuideService;
+	private User user;
+	private VisitedLocation[] visitedLocations;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		TourGuideProperties properties = BenchmarkData.properties();
+		List<Attraction> attractions = BenchmarkData.attractions(attractionCount);
+		InternalTestHelper.setInternalUserNumber(0);
+		tourGuideService = new TourGuideService(BenchmarkData.rewardsService(new BenchmarkGateway(attractions, properties), properties), properties);
+		tourGuideService.tracker.stopTracking();
+		user = new User(new UUID(0, 1), "benchmarkUser", "000", "benchmarkUser@tourGuide.com");
+		visitedLocations = BenchmarkData.visitedLocations(user.getUserId(), attractions, LOCATIONS, BenchmarkData.SEED).toArray(new VisitedLocation[0]);
+	}
+
+	@TearDown
+	public void tearDown() {
+		tourGuideService.tracker.shutdown();
+	}
+
+	@Benchmark
+	public List<NearbyAttraction> getNearByAttractions() {
+		return tourGuideService.getNearByAttractions(visitedLocations[next++ & (LOCATIONS - 1)], user, numberOfAttractions);
+	}
+}
@@ -0,0 +1,73 @@
+package tourGuide.benchmark;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.service.RewardsService;
+
+/**
+ * RewardsService.calculateRewards over a user's whole history: proximity search for every location,
+ * de-duplication and addition of the rewards. Reward points come from the warmed-up cache, so the downstream
+ * call is not part of the measure. Each invocation starts from a user with no reward.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RewardsBenchmark {
+
+	private static final UUID USER_ID = new UUID(0, 1);
+
+	@Param({ "26", "1000", "10000" })
+	public int attractionCount;
+
+	@Param({ "10", "100" })
+	public int historySize;
+
+	private RewardsService rewardsService;
+	private List<VisitedLocation> history;
+	private User user;
+
+	@Setup
+	public void setUp() {
+		TourGuideProperties properties = BenchmarkData.properties();
+		List<Attraction> attractions = BenchmarkData.attractions(attractionCount);
+		rewardsService = BenchmarkData.rewardsService(new BenchmarkGateway(attractions, properties), properties);
+		history = BenchmarkData.visitedLocations(USER_ID, attractions, historySize, BenchmarkData.SEED);
+		newUser();
+		rewardsService.calculateRewards(user);
+	}
+
+	// The same id every time: the reward points cached by the first evaluation are reused
+	@Setup(Level.Invocation)
+	public void newUser() {
+		user = new User(USER_ID, "benchmarkUser", "000", "benchmarkUser@tourGuide.com");
+		history.forEach(user::addToVisitedLocations);
+	}
+
+	@Benchmark
+	public int calculateRewards() {
+		rewardsService.calculateRewards(user);
+		return user.getRewardedAttractionCount();
+	}
+}
@@ -0,0 +1,97 @@
+package tourGuide.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsoniter.output.JsonStream;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.NearbyAttraction;
+import tourGuide.domain.user.User;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.service.TourGuideService;
+
+/**
+ * Serialization of the controller payloads with jsoniter, as the controller does, and with Jackson:
+ * the current locations of userCount generated users (also through the streaming writer of
+ * /getAllCurrentLocations) and the nearby attractions of a user
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SerializationBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int userCount;
+
+	private TourGuideService tourGuideService;
+	private HashMap<String, Location> allCurrentLocations;
+	private List<NearbyAttraction> nearbyAttractions;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Setup
+	public void setUp() {
+		TourGuideProperties properties = BenchmarkData.properties();
+		properties.getInternalUsers().setSeed(BenchmarkData.SEED);
+		List<Attraction> attractions = BenchmarkData.attractions(26);
+		InternalTestHelper.setInternalUserNumber(userCount);
+		tourGuideService = new TourGuideService(BenchmarkData.rewardsService(new BenchmarkGateway(attractions, properties), properties), properties);
+		tourGuideService.tracker.stopTracking();
+		allCurrentLocations = tourGuideService.getAllCurrentLocations();
+		User user = tourGuideService.getUser("internalUser0");
+		nearbyAttractions = tourGuideService.getNearByAttractions(user.getLastVisitedLocation(), user);
+	}
+
+	@TearDown
+	public void tearDown() {
+		tourGuideService.tracker.shutdown();
+	}
+
+	@Benchmark
+	public String allCurrentLocationsJsoniter() {
+		return JsonStream.serialize(allCurrentLocations);
+	}
+
+	@Benchmark
+	public String allCurrentLocationsJackson() throws JsonProcessingException {
+		return objectMapper.writeValueAsString(allCurrentLocations);
+	}
+
+	@Benchmark
+	public void allCurrentLocationsStreaming() throws IOException {
+		tourGuideService.writeAllCurrentLocations(OutputStream.nullOutputStream());
+	}
+
+	@Benchmark
+	public String nearbyAttractionsJsoniter() {
+		return JsonStream.serialize(nearbyAttractions);
+	}
+
+	@Benchmark
+	public String nearbyAttractionsJackson() throws JsonProcessingException {
+		return objectMapper.writeValueAsString(nearbyAttractions);
+	}
+}
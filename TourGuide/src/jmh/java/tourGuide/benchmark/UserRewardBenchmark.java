@@ -0,0 +1,78 @@
+package tourGuide.benchmark;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.UserReward;
+
+/**
+ * User.addUserReward: a duplicate reward rejected by a user already holding rewardCount rewards,
+ * and rewardCount rewards, each offered twice, added to a new user
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class UserRewardBenchmark {
+
+	private static final UUID USER_ID = new UUID(0, 1);
+
+	@Param({ "10", "100", "1000" })
+	public int rewardCount;
+
+	private UserReward[] userRewards;
+	private User user;
+	private int next;
+
+	@Setup
+	public void setUp() {
+		List<Attraction> attractions = BenchmarkData.attractions(rewardCount);
+		List<VisitedLocation> visitedLocations = BenchmarkData.visitedLocations(USER_ID, attractions, rewardCount, BenchmarkData.SEED);
+		userRewards = new UserReward[rewardCount];
+		for(int i = 0; i < rewardCount; i++) {
+			userRewards[i] = new UserReward(visitedLocations.get(i), attractions.get(i), i);
+		}
+		user = newUser();
+		for(UserReward userReward : userRewards) {
+			user.addUserReward(userReward);
+		}
+	}
+
+	private static User newUser() {
+		return new User(USER_ID, "benchmarkUser", "000", "benchmarkUser@tourGuide.com");
+	}
+
+	@Benchmark
+	public int addDuplicateReward() {
+		user.addUserReward(userRewards[next++ % rewardCount]);
+		return user.getRewardedAttractionCount();
+	}
+
+	@Benchmark
+	public int addRewards() {
+		User newUser = newUser();
+		for(UserReward userReward : userRewards) {
+			newUser.addUserReward(userReward);
+			newUser.addUserReward(userReward);
+		}
+		return newUser.getRewardedAttractionCount();
+	}
+}
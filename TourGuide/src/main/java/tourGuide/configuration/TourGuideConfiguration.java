@@ -1,13 +1,15 @@
 package tourGuide.configuration;
 
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties(TourGuideProperties.class)
 public class TourGuideConfiguration {
 
 	@Bean
-	public TourGuideInitialization getTourGuideInitialization() {
-		return new TourGuideInitialization();
+	public TourGuideInitialization getTourGuideInitialization(TourGuideProperties properties) {
+		return new TourGuideInitialization(properties);
 	}
 }
@@ -7,10 +7,10 @@ import org.slf4j.LoggerFactory;
 import tourGuide.domain.user.UserPreferences;
 import tourGuide.domain.user.User;
 import tourGuide.helper.InternalTestHelper;
+import tourGuide.store.UserRegistry;
 
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.IntStream;
 
 public class TourGuideInitialization {
@@ -24,53 +24,89 @@ public class TourGuideInitialization {
 
     private static final String tripPricerApiKey = "test-server-api-key";
     // Database connection will be used for external users, but for testing purposes internal users are provided and stored in memory
-    private final Map<String, User> internalUserMap = new HashMap<>();
+    private final UserRegistry internalUserRegistry;
+    private final long seed;
+    private final int historyLength;
+    private final long historyEndMillis;
+
+    public TourGuideInitialization() {
+        this(new TourGuideProperties());
+    }
+
+    public TourGuideInitialization(TourGuideProperties properties) {
+        this.internalUserRegistry = new UserRegistry(properties.getHistory().toPolicy());
+        this.seed = properties.getInternalUsers().getSeed();
+        this.historyLength = Math.max(0, properties.getInternalUsers().getHistoryLength());
+        this.historyEndMillis = properties.getInternalUsers().getHistoryEndMillis();
+    }
 
     public static String getTripPricerApiKey() {
         return tripPricerApiKey;
     }
 
-    public Map<String, User> getInternalUserMap() {
-        return internalUserMap;
+    public UserRegistry getInternalUserRegistry() {
+        return internalUserRegistry;
     }
 
+    /**
+     * Generates InternalTestHelper.getInternalUserNumber() users in parallel.
+     * Each user draws from its own random stream, seeded from the configured seed and its index: the same seed
+     * gives the same users (ids, histories, preferences) whatever the number of threads, with no shared state
+     * between threads. Visit times are drawn over the 30 days before the configured history end, not the current
+     * date, so that the same seed gives the same users on any day.
+     */
     public void initializeInternalUsers() {
-        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).forEach(i -> {
+        IntStream.range(0, InternalTestHelper.getInternalUserNumber()).parallel().forEach(i -> {
+            SplittableRandom random = new SplittableRandom(userSeed(seed, i));
             String userName = "internalUser" + i;
             String phone = "000";
             String email = userName + "@tourGuide.com";
-            User user = new User(UUID.randomUUID(), userName, phone, email);
-            generateUserLocationHistory(user);
+            User user = internalUserRegistry.newUser(randomUuid(random), userName, phone, email);
+            generateUserLocationHistory(user, random);
 
             // Added for userPreferences initialization
             UserPreferences userPreferences = new UserPreferences();
             user.setUserPreferences(userPreferences);
 
-            internalUserMap.put(userName, user);
+            internalUserRegistry.addIfAbsent(user);
         });
         logger.debug("Created " + InternalTestHelper.getInternalUserNumber() + " internal test users.");
     }
 
-    private void generateUserLocationHistory(User user) {
-        IntStream.range(0, 3).forEach(i-> {
-            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(generateRandomLatitude(), generateRandomLongitude()), getRandomTime()));
-        });
+    private void generateUserLocationHistory(User user, SplittableRandom random) {
+        for(int i = 0; i < historyLength; i++) {
+            user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(generateRandomLatitude(random), generateRandomLongitude(random)), getRandomTime(random)));
+        }
     }
 
-    private double generateRandomLongitude() {
+    private double generateRandomLongitude(SplittableRandom random) {
         double leftLimit = -180;
         double rightLimit = 180;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+        return random.nextDouble(leftLimit, rightLimit);
     }
 
-    private double generateRandomLatitude() {
+    private double generateRandomLatitude(SplittableRandom random) {
         double leftLimit = -85.05112878;
         double rightLimit = 85.05112878;
-        return leftLimit + new Random().nextDouble() * (rightLimit - leftLimit);
+        return random.nextDouble(leftLimit, rightLimit);
+    }
+
+    private Date getRandomTime(SplittableRandom random) {
+        return new Date(historyEndMillis - random.nextLong(TimeUnit.DAYS.toMillis(30)));
+    }
+
+    // Random (version 4) UUID drawn from the user's stream instead of the shared SecureRandom of UUID.randomUUID()
+    private static UUID randomUuid(SplittableRandom random) {
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
     }
 
-    private Date getRandomTime() {
-        LocalDateTime localDateTime = LocalDateTime.now().minusDays(new Random().nextInt(30));
-        return Date.from(localDateTime.toInstant(ZoneOffset.UTC));
+    // SplitMix64 finalizer: well-spread, distinct seeds for consecutive indexes
+    private static long userSeed(long seed, int index) {
+        long z = seed + (index + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 }
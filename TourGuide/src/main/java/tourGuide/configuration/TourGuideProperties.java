@@ -0,0 +1,693 @@
+package tourGuide.configuration;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import tourGuide.domain.user.VisitedLocationHistory;
+import tourGuide.tracker.ExecutionMode;
+import tourGuide.tracker.TrackerScheduling;
+
+/**
+ * Settings read from application.properties under the "tourguide" prefix.
+ * Every value has a default so services can still be built by hand (tests, tools).
+ */
+@ConfigurationProperties(prefix = "tourguide")
+public class TourGuideProperties {
+
+	private final Downstream downstream = new Downstream();
+	private final Attractions attractions = new Attractions();
+	private final Rewards rewards = new Rewards();
+	private final Tracker tracker = new Tracker();
+	private final Web web = new Web();
+	private final History history = new History();
+	private final LocationStore locationStore = new LocationStore();
+	private final Journal journal = new Journal();
+	private final Snapshot snapshot = new Snapshot();
+	private final InternalUsers internalUsers = new InternalUsers();
+
+	public Downstream getDownstream() {
+		return downstream;
+	}
+
+	public Attractions getAttractions() {
+		return attractions;
+	}
+
+	public Rewards getRewards() {
+		return rewards;
+	}
+
+	public Tracker getTracker() {
+		return tracker;
+	}
+
+	public Web getWeb() {
+		return web;
+	}
+
+	public History getHistory() {
+		return history;
+	}
+
+	public LocationStore getLocationStore() {
+		return locationStore;
+	}
+
+	public Journal getJournal() {
+		return journal;
+	}
+
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public InternalUsers getInternalUsers() {
+		return internalUsers;
+	}
+
+	/**
+	 * Location of the GPS, Rewards and TripPricer services, and how each one is protected
+	 */
+	public static class Downstream {
+		private String gpsUrl = "http://localhost:8081";
+		private String rewardsUrl = "http://localhost:8082";
+		private String tripPricerUrl = "http://localhost:8083";
+		private String httpVersion = "HTTP_2";
+		private int clientThreads = 0;
+		private final Resilience gps = new Resilience();
+		private final Resilience rewards = new Resilience();
+		private final Resilience tripPricer = new Resilience();
+
+		public Resilience getGps() {
+			return gps;
+		}
+
+		public Resilience getRewards() {
+			return rewards;
+		}
+
+		public Resilience getTripPricer() {
+			return tripPricer;
+		}
+
+		public String getGpsUrl() {
+			return gpsUrl;
+		}
+
+		public void setGpsUrl(String gpsUrl) {
+			this.gpsUrl = gpsUrl;
+		}
+
+		public String getRewardsUrl() {
+			return rewardsUrl;
+		}
+
+		public void setRewardsUrl(String rewardsUrl) {
+			this.rewardsUrl = rewardsUrl;
+		}
+
+		public String getTripPricerUrl() {
+			return tripPricerUrl;
+		}
+
+		public void setTripPricerUrl(String tripPricerUrl) {
+			this.tripPricerUrl = tripPricerUrl;
+		}
+
+		public String getHttpVersion() {
+			return httpVersion;
+		}
+
+		public void setHttpVersion(String httpVersion) {
+			this.httpVersion = httpVersion;
+		}
+
+		public int getClientThreads() {
+			return clientThreads;
+		}
+
+		public void setClientThreads(int clientThreads) {
+			this.clientThreads = clientThreads;
+		}
+	}
+
+	/**
+	 * Protection of one downstream service: timeouts, a bulkhead of maxConcurrentCalls (blocking callers wait up
+	 * to maxWaitMillis for a place), a circuit breaker opened for circuitOpenMillis when circuitFailureRateThreshold
+	 * of the last circuitWindowSize calls failed (once circuitMinimumCalls are known), and a hedged second
+	 * request when a GET has not been answered after hedgeDelayMillis (0 disables hedging)
+	 */
+	public static class Resilience {
+		private long connectTimeoutMillis = 2000;
+		private long readTimeoutMillis = 5000;
+		private int maxConcurrentCalls = 1000;
+		private long maxWaitMillis = 100;
+		private int circuitWindowSize = 50;
+		private int circuitMinimumCalls = 20;
+		private double circuitFailureRateThreshold = 0.5;
+		private long circuitOpenMillis = 10000;
+		private long hedgeDelayMillis = 0;
+
+		public long getConnectTimeoutMillis() {
+			return connectTimeoutMillis;
+		}
+
+		public void setConnectTimeoutMillis(long connectTimeoutMillis) {
+			this.connectTimeoutMillis = connectTimeoutMillis;
+		}
+
+		public long getReadTimeoutMillis() {
+			return readTimeoutMillis;
+		}
+
+		public void setReadTimeoutMillis(long readTimeoutMillis) {
+			this.readTimeoutMillis = readTimeoutMillis;
+		}
+
+		public int getMaxConcurrentCalls() {
+			return maxConcurrentCalls;
+		}
+
+		public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+			this.maxConcurrentCalls = maxConcurrentCalls;
+		}
+
+		public long getMaxWaitMillis() {
+			return maxWaitMillis;
+		}
+
+		public void setMaxWaitMillis(long maxWaitMillis) {
+			this.maxWaitMillis = maxWaitMillis;
+		}
+
+		public int getCircuitWindowSize() {
+			return circuitWindowSize;
+		}
+
+		public void setCircuitWindowSize(int circuitWindowSize) {
+			this.circuitWindowSize = circuitWindowSize;
+		}
+
+		public int getCircuitMinimumCalls() {
+			return circuitMinimumCalls;
+		}
+
+		public void setCircuitMinimumCalls(int circuitMinimumCalls) {
+			this.circuitMinimumCalls = circuitMinimumCalls;
+		}
+
+		public double getCircuitFailureRateThreshold() {
+			return circuitFailureRateThreshold;
+		}
+
+		public void setCircuitFailureRateThreshold(double circuitFailureRateThreshold) {
+			this.circuitFailureRateThreshold = circuitFailureRateThreshold;
+		}
+
+		public long getCircuitOpenMillis() {
+			return circuitOpenMillis;
+		}
+
+		public void setCircuitOpenMillis(long circuitOpenMillis) {
+			this.circuitOpenMillis = circuitOpenMillis;
+		}
+
+		public long getHedgeDelayMillis() {
+			return hedgeDelayMillis;
+		}
+
+		public void setHedgeDelayMillis(long hedgeDelayMillis) {
+			this.hedgeDelayMillis = hedgeDelayMillis;
+		}
+	}
+
+	/**
+	 * In-memory attraction catalog
+	 */
+	public static class Attractions {
+		private long refreshIntervalSeconds = 300;
+		// Until the first successful load, retried after this delay, doubled up to firstLoadMaxRetryMillis (0 disables)
+		private long firstLoadRetryMillis = 1000;
+		private long firstLoadMaxRetryMillis = 30000;
+
+		public long getRefreshIntervalSeconds() {
+			return refreshIntervalSeconds;
+		}
+
+		public void setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+			this.refreshIntervalSeconds = refreshIntervalSeconds;
+		}
+
+		public long getFirstLoadRetryMillis() {
+			return firstLoadRetryMillis;
+		}
+
+		public void setFirstLoadRetryMillis(long firstLoadRetryMillis) {
+			this.firstLoadRetryMillis = firstLoadRetryMillis;
+		}
+
+		public long getFirstLoadMaxRetryMillis() {
+			return firstLoadMaxRetryMillis;
+		}
+
+		public void setFirstLoadMaxRetryMillis(long firstLoadMaxRetryMillis) {
+			this.firstLoadMaxRetryMillis = firstLoadMaxRetryMillis;
+		}
+	}
+
+	/**
+	 * Reward points client: pairs submitted within the linger time are sent as one batch,
+	 * answers are cached per (attraction, user)
+	 */
+	public static class Rewards {
+		private boolean batchEnabled = true;
+		private int batchMaxSize = 100;
+		private long batchLingerMillis = 2;
+		private int batchMaxInFlight = 4;
+		private int batchMaxWaiting = 64;
+		private long cacheMaxSize = 100000;
+		private long cacheTtlMinutes = 60;
+
+		public boolean isBatchEnabled() {
+			return batchEnabled;
+		}
+
+		public void setBatchEnabled(boolean batchEnabled) {
+			this.batchEnabled = batchEnabled;
+		}
+
+		public int getBatchMaxSize() {
+			return batchMaxSize;
+		}
+
+		public void setBatchMaxSize(int batchMaxSize) {
+			this.batchMaxSize = batchMaxSize;
+		}
+
+		public long getBatchLingerMillis() {
+			return batchLingerMillis;
+		}
+
+		public void setBatchLingerMillis(long batchLingerMillis) {
+			this.batchLingerMillis = batchLingerMillis;
+		}
+
+		public int getBatchMaxInFlight() {
+			return batchMaxInFlight;
+		}
+
+		public void setBatchMaxInFlight(int batchMaxInFlight) {
+			this.batchMaxInFlight = batchMaxInFlight;
+		}
+
+		public int getBatchMaxWaiting() {
+			return batchMaxWaiting;
+		}
+
+		public void setBatchMaxWaiting(int batchMaxWaiting) {
+			this.batchMaxWaiting = batchMaxWaiting;
+		}
+
+		public long getCacheMaxSize() {
+			return cacheMaxSize;
+		}
+
+		public void setCacheMaxSize(long cacheMaxSize) {
+			this.cacheMaxSize = cacheMaxSize;
+		}
+
+		public long getCacheTtlMinutes() {
+			return cacheTtlMinutes;
+		}
+
+		public void setCacheTtlMinutes(long cacheTtlMinutes) {
+			this.cacheTtlMinutes = cacheTtlMinutes;
+		}
+	}
+
+	/**
+	 * Tracker: one cycle per polling interval. In PLATFORM mode users are tracked on a fixed worker pool
+	 * fed through a bounded queue; in ASYNC and VIRTUAL modes up to maxInFlight users are in flight at once.
+	 * CONTINUOUS scheduling spreads the users over the interval instead, between minConcurrency and
+	 * maxInFlight users in flight, raised by concurrencyIncrement while users are dispatched more than
+	 * lagTargetMillis late and multiplied by concurrencyDecreaseFactor when more than maxErrorRate of them fail
+	 */
+	public static class Tracker {
+		private long pollingIntervalSeconds = 60;
+		private int poolSize = 100;
+		private int queueCapacity = 1000;
+		private ExecutionMode mode = ExecutionMode.PLATFORM;
+		private int maxInFlight = 1000;
+		private TrackerScheduling scheduling = TrackerScheduling.CYCLE;
+		private long lagTargetMillis = 5000;
+		private int minConcurrency = 4;
+		private int concurrencyIncrement = 10;
+		private double concurrencyDecreaseFactor = 0.5;
+		private double maxErrorRate = 0.05;
+		private long adjustIntervalMillis = 1000;
+
+		public long getPollingIntervalSeconds() {
+			return pollingIntervalSeconds;
+		}
+
+		public void setPollingIntervalSeconds(long pollingIntervalSeconds) {
+			this.pollingIntervalSeconds = pollingIntervalSeconds;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public ExecutionMode getMode() {
+			return mode;
+		}
+
+		public void setMode(ExecutionMode mode) {
+			this.mode = mode;
+		}
+
+		public int getMaxInFlight() {
+			return maxInFlight;
+		}
+
+		public void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+
+		public TrackerScheduling getScheduling() {
+			return scheduling;
+		}
+
+		public void setScheduling(TrackerScheduling scheduling) {
+			this.scheduling = scheduling;
+		}
+
+		public long getLagTargetMillis() {
+			return lagTargetMillis;
+		}
+
+		public void setLagTargetMillis(long lagTargetMillis) {
+			this.lagTargetMillis = lagTargetMillis;
+		}
+
+		public int getMinConcurrency() {
+			return minConcurrency;
+		}
+
+		public void setMinConcurrency(int minConcurrency) {
+			this.minConcurrency = minConcurrency;
+		}
+
+		public int getConcurrencyIncrement() {
+			return concurrencyIncrement;
+		}
+
+		public void setConcurrencyIncrement(int concurrencyIncrement) {
+			this.concurrencyIncrement = concurrencyIncrement;
+		}
+
+		public double getConcurrencyDecreaseFactor() {
+			return concurrencyDecreaseFactor;
+		}
+
+		public void setConcurrencyDecreaseFactor(double concurrencyDecreaseFactor) {
+			this.concurrencyDecreaseFactor = concurrencyDecreaseFactor;
+		}
+
+		public double getMaxErrorRate() {
+			return maxErrorRate;
+		}
+
+		public void setMaxErrorRate(double maxErrorRate) {
+			this.maxErrorRate = maxErrorRate;
+		}
+
+		public long getAdjustIntervalMillis() {
+			return adjustIntervalMillis;
+		}
+
+		public void setAdjustIntervalMillis(long adjustIntervalMillis) {
+			this.adjustIntervalMillis = adjustIntervalMillis;
+		}
+	}
+
+	/**
+	 * Web requests: VIRTUAL runs each request on a virtual thread when the JVM supports it
+	 */
+	public static class Web {
+		private ExecutionMode mode = ExecutionMode.PLATFORM;
+
+		public ExecutionMode getMode() {
+			return mode;
+		}
+
+		public void setMode(ExecutionMode mode) {
+			this.mode = mode;
+		}
+	}
+
+	/**
+	 * Visited locations history of each user: the last capacity locations are kept, older ones are dropped
+	 * or compacted into at most compactedCapacity points (DEDUPLICATE, or DOWNSAMPLE to one point per interval)
+	 */
+	public static class History {
+		private int capacity = 100;
+		private VisitedLocationHistory.Compaction compaction = VisitedLocationHistory.Compaction.NONE;
+		private int compactedCapacity = 168;
+		private long downsampleIntervalMinutes = 60;
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public void setCapacity(int capacity) {
+			this.capacity = capacity;
+		}
+
+		public VisitedLocationHistory.Compaction getCompaction() {
+			return compaction;
+		}
+
+		public void setCompaction(VisitedLocationHistory.Compaction compaction) {
+			this.compaction = compaction;
+		}
+
+		public int getCompactedCapacity() {
+			return compactedCapacity;
+		}
+
+		public void setCompactedCapacity(int compactedCapacity) {
+			this.compactedCapacity = compactedCapacity;
+		}
+
+		public long getDownsampleIntervalMinutes() {
+			return downsampleIntervalMinutes;
+		}
+
+		public void setDownsampleIntervalMinutes(long downsampleIntervalMinutes) {
+			this.downsampleIntervalMinutes = downsampleIntervalMinutes;
+		}
+
+		public VisitedLocationHistory.Policy toPolicy() {
+			return new VisitedLocationHistory.Policy(capacity, compaction, compactedCapacity, TimeUnit.MINUTES.toMillis(downsampleIntervalMinutes));
+		}
+	}
+
+	/**
+	 * Latest location of every user in primitive columns, allocated by segments of segmentSize users,
+	 * in direct buffers when offHeap is set.
+	 * The serialized snapshot of all locations is rebuilt after each tracker cycle, or on request when locations
+	 * changed and the snapshot is older than snapshotMinRebuildIntervalMillis
+	 */
+	public static class LocationStore {
+		private int segmentSize = 4096;
+		private boolean offHeap = false;
+		private boolean snapshotGzip = true;
+		private long snapshotMinRebuildIntervalMillis = 1000;
+
+		public boolean isSnapshotGzip() {
+			return snapshotGzip;
+		}
+
+		public void setSnapshotGzip(boolean snapshotGzip) {
+			this.snapshotGzip = snapshotGzip;
+		}
+
+		public long getSnapshotMinRebuildIntervalMillis() {
+			return snapshotMinRebuildIntervalMillis;
+		}
+
+		public void setSnapshotMinRebuildIntervalMillis(long snapshotMinRebuildIntervalMillis) {
+			this.snapshotMinRebuildIntervalMillis = snapshotMinRebuildIntervalMillis;
+		}
+
+		public int getSegmentSize() {
+			return segmentSize;
+		}
+
+		public void setSegmentSize(int segmentSize) {
+			this.segmentSize = segmentSize;
+		}
+
+		public boolean isOffHeap() {
+			return offHeap;
+		}
+
+		public void setOffHeap(boolean offHeap) {
+			this.offHeap = offHeap;
+		}
+	}
+
+	/**
+	 * Append-only journal of the user changes, replayed on startup.
+	 * Segment files of segmentSizeMb are memory-mapped; appends are forced to disk together every
+	 * commitIntervalMillis, and a checkpoint of every user replaces the older segments every checkpointIntervalMinutes
+	 */
+	public static class Journal {
+		private boolean enabled = false;
+		private String directory = "journal";
+		private int segmentSizeMb = 64;
+		private long commitIntervalMillis = 10;
+		private long checkpointIntervalMinutes = 30;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getDirectory() {
+			return directory;
+		}
+
+		public void setDirectory(String directory) {
+			this.directory = directory;
+		}
+
+		public int getSegmentSizeMb() {
+			return segmentSizeMb;
+		}
+
+		public void setSegmentSizeMb(int segmentSizeMb) {
+			this.segmentSizeMb = segmentSizeMb;
+		}
+
+		public long getCommitIntervalMillis() {
+			return commitIntervalMillis;
+		}
+
+		public void setCommitIntervalMillis(long commitIntervalMillis) {
+			this.commitIntervalMillis = commitIntervalMillis;
+		}
+
+		public long getCheckpointIntervalMinutes() {
+			return checkpointIntervalMinutes;
+		}
+
+		public void setCheckpointIntervalMinutes(long checkpointIntervalMinutes) {
+			this.checkpointIntervalMinutes = checkpointIntervalMinutes;
+		}
+	}
+
+	/**
+	 * Binary snapshot of every user, loaded on startup and saved on shutdown when enabled, also written on demand.
+	 * Users are written and read by chunks of chunkUsers, parallelism chunks at a time (0 for one per processor).
+	 * Ignored on startup when the journal is enabled, whose checkpoints use the same format
+	 */
+	public static class Snapshot {
+		private String path = "users.snapshot";
+		private boolean loadOnStartup = false;
+		private boolean saveOnShutdown = false;
+		private int chunkUsers = 10000;
+		private int parallelism = 0;
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public boolean isLoadOnStartup() {
+			return loadOnStartup;
+		}
+
+		public void setLoadOnStartup(boolean loadOnStartup) {
+			this.loadOnStartup = loadOnStartup;
+		}
+
+		public boolean isSaveOnShutdown() {
+			return saveOnShutdown;
+		}
+
+		public void setSaveOnShutdown(boolean saveOnShutdown) {
+			this.saveOnShutdown = saveOnShutdown;
+		}
+
+		public int getChunkUsers() {
+			return chunkUsers;
+		}
+
+		public void setChunkUsers(int chunkUsers) {
+			this.chunkUsers = chunkUsers;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+	}
+
+	/**
+	 * Generation of the internal test users: the same seed gives the same users on every run,
+	 * each with historyLength visited locations in the 30 days before historyEndMillis (2020-01-01T00:00Z)
+	 */
+	public static class InternalUsers {
+		private long seed = 20200101L;
+		private int historyLength = 3;
+		private long historyEndMillis = 1577836800000L;
+
+		public long getSeed() {
+			return seed;
+		}
+
+		public void setSeed(long seed) {
+			this.seed = seed;
+		}
+
+		public int getHistoryLength() {
+			return historyLength;
+		}
+
+		public void setHistoryLength(int historyLength) {
+			this.historyLength = historyLength;
+		}
+
+		public long getHistoryEndMillis() {
+			return historyEndMillis;
+		}
+
+		public void setHistoryEndMillis(long historyEndMillis) {
+			this.historyEndMillis = historyEndMillis;
+		}
+	}
+}
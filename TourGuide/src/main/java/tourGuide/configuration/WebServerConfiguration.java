@@ -0,0 +1,38 @@
+package tourGuide.configuration;
+
+import java.util.concurrent.ExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import tourGuide.helper.VirtualThreads;
+import tourGuide.tracker.ExecutionMode;
+
+/**
+ * Runs the Tomcat request handling on virtual threads when tourguide.web.mode=VIRTUAL and the JVM supports them.
+ * Otherwise Tomcat keeps its own platform thread pool (server.tomcat.max-threads).
+ */
+@Configuration
+public class WebServerConfiguration {
+	private Logger logger = LoggerFactory.getLogger(WebServerConfiguration.class);
+
+	@Bean
+	public WebServerFactoryCustomizer<TomcatServletWebServerFactory> tomcatExecutionModeCustomizer(TourGuideProperties properties) {
+		return factory -> {
+			if(properties.getWeb().getMode() != ExecutionMode.VIRTUAL) {
+				return;
+			}
+			ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor().orElse(null);
+			if(executor == null) {
+				logger.warn("Virtual threads are not supported by this JVM, web requests stay on the Tomcat thread pool");
+				return;
+			}
+			logger.info("Web requests run on virtual threads");
+			factory.addConnectorCustomizers(connector -> connector.getProtocolHandler().setExecutor(executor));
+		};
+	}
+}
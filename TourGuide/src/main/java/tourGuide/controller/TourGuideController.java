@@ -1,10 +1,16 @@
 package tourGuide.controller;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 
-import tourGuide.domain.location.Location;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -15,12 +21,15 @@ import com.jsoniter.output.JsonStream;
 import tourGuide.domain.location.VisitedLocation;
 import tourGuide.domain.user.User;
 import tourGuide.domain.user.UserPreferences;
+import tourGuide.service.CurrentLocationsSnapshot;
 import tourGuide.service.TourGuideService;
 import tourGuide.domain.tripdeal.Provider;
 
 @RestController
 public class TourGuideController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
 	@Autowired
     TourGuideService tourGuideService;
 	
@@ -36,9 +45,9 @@ public class TourGuideController {
     }
     
     @RequestMapping("/getNearbyAttractions")
-    public String getNearbyAttractions(@RequestParam String userName) {
+    public String getNearbyAttractions(@RequestParam String userName, @RequestParam(defaultValue = "5") int numberOfAttractions) {
     	VisitedLocation visitedLocation = tourGuideService.getUserLocation(getUser(userName));
-    	return JsonStream.serialize(tourGuideService.getNearByAttractions(visitedLocation, getUser(userName)));
+    	return JsonStream.serialize(tourGuideService.getNearByAttractions(visitedLocation, getUser(userName), numberOfAttractions));
     }
     
     @RequestMapping("/getRewards") 
@@ -46,12 +55,51 @@ public class TourGuideController {
     	return JsonStream.serialize(tourGuideService.getUserRewards(getUser(userName)));
     }
 
+    /**
+     * Without parameters, serves the pre-serialized snapshot of all locations (gzipped if the client accepts it),
+     * with an ETag: a client sending it back in If-None-Match gets a 304 until locations change.
+     * With a cursor or a limit, streams the locations as they are read: only the users of the next limit slots
+     * are written and X-Next-Cursor gives the cursor of the following page, absent on the last one.
+     */
     @RequestMapping("/getAllCurrentLocations")
-    public String getAllCurrentLocations() {
-        HashMap<String, Location> allCurrentLocations = tourGuideService.getAllCurrentLocations();
-        return JsonStream.serialize(allCurrentLocations);
+    public void getAllCurrentLocations(@RequestParam(defaultValue = "0") int cursor, @RequestParam(required = false) Integer limit,
+                                       HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if(cursor < 0 || (limit != null && limit < 1)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "cursor must be positive and limit strictly positive");
+            return;
+        }
+        if(cursor == 0 && limit == null) {
+            writeCurrentLocationsSnapshot(request, response);
+            return;
+        }
+        int slotCount = tourGuideService.getCurrentLocationSlotCount();
+        int end = limit == null ? slotCount : (int) Math.min(slotCount, (long) cursor + limit);
+        if(end < slotCount) {
+            response.setHeader(NEXT_CURSOR_HEADER, String.valueOf(end));
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        tourGuideService.writeCurrentLocations(response.getOutputStream(), cursor, end);
     }
     
+    private void writeCurrentLocationsSnapshot(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        CurrentLocationsSnapshot snapshot = tourGuideService.getCurrentLocationsSnapshot();
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzipped = snapshot.getGzippedJson() != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        response.setHeader(HttpHeaders.ETAG, snapshot.getETag(gzipped));
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if(snapshot.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        byte[] body = gzipped ? snapshot.getGzippedJson() : snapshot.getJson();
+        if(gzipped) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
     @RequestMapping("/getTripDeals")
     public String getTripDeals(@RequestParam String userName) {
     	List<Provider> providers = tourGuideService.getTripDeals(getUser(userName));
@@ -69,6 +117,15 @@ public class TourGuideController {
         return JsonStream.serialize(tourGuideService.postUserPreferences(getUser(userName), userPreferences));
     }
 
+    /**
+     * Writes every user to the binary snapshot file, loaded on the next startup when tourguide.snapshot.load-on-startup is set.
+     * POST only: a crawler or a prefetching browser must not be able to trigger a full write.
+     */
+    @PostMapping("/saveUserSnapshot")
+    public String saveUserSnapshot() throws IOException {
+        return JsonStream.serialize(Collections.singletonMap("users", tourGuideService.saveUserSnapshot()));
+    }
+
     private User getUser(String userName) {
     	return tourGuideService.getUser(userName);
     }
@@ -0,0 +1,31 @@
+package tourGuide.domain.user;
+
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * (attraction, user) pair whose reward points are requested from the Rewards service
+ */
+public class RewardPointsRequest {
+
+	public final UUID attractionId;
+	public final UUID userId;
+
+	public RewardPointsRequest(UUID attractionId, UUID userId) {
+		this.attractionId = attractionId;
+		this.userId = userId;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if(this == o) return true;
+		if(!(o instanceof RewardPointsRequest)) return false;
+		RewardPointsRequest that = (RewardPointsRequest) o;
+		return Objects.equals(attractionId, that.attractionId) && Objects.equals(userId, that.userId);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(attractionId, userId);
+	}
+}
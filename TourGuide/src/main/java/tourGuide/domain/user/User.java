@@ -1,12 +1,18 @@
 package tourGuide.domain.user;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import tourGuide.domain.location.Attraction;
 import tourGuide.domain.location.VisitedLocation;
 import tourGuide.domain.tripdeal.Provider;
+import tourGuide.store.CurrentLocationStore;
 
 public class User {
 	private final UUID userId;
@@ -14,15 +20,29 @@ public class User {
 	private String phoneNumber;
 	private String emailAddress;
 	private Date latestLocationTimestamp;
-	private List<VisitedLocation> visitedLocations = new ArrayList<>();
-	private List<UserReward> userRewards = new ArrayList<>();
+	// Recent locations in a bounded ring, older ones dropped or compacted
+	private final VisitedLocationHistory visitedLocations;
+	// Latest location also written in this store once the user is registered in it
+	private CurrentLocationStore currentLocationStore;
+	private int currentLocationSlot = -1;
+	private UserChangeListener changeListener;
+	// Rewards in insertion order, indexed by attraction for constant-time de-duplication
+	private final List<UserReward> userRewards = new CopyOnWriteArrayList<>();
+	private final Map<UUID, UserReward> userRewardsByAttraction = new HashMap<>();
+	// Sequence number of the first visited location not yet evaluated for rewards
+	private long rewardsWatermark = 0;
 	private UserPreferences userPreferences = new UserPreferences();
 	private List<Provider> tripDeals = new ArrayList<>();
 	public User(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		this(userId, userName, phoneNumber, emailAddress, VisitedLocationHistory.DEFAULT_POLICY);
+	}
+
+	public User(UUID userId, String userName, String phoneNumber, String emailAddress, VisitedLocationHistory.Policy historyPolicy) {
 		this.userId = userId;
 		this.userName = userName;
 		this.phoneNumber = phoneNumber;
 		this.emailAddress = emailAddress;
+		this.visitedLocations = new VisitedLocationHistory(historyPolicy);
 	}
 	
 	public UUID getUserId() {
@@ -57,40 +77,132 @@ public class User {
 		return latestLocationTimestamp;
 	}
 	
-	public void addToVisitedLocations(VisitedLocation visitedLocation) {
+	public synchronized void addToVisitedLocations(VisitedLocation visitedLocation) {
 		visitedLocations.add(visitedLocation);
+		writeCurrentLocation(visitedLocation);
+		if(changeListener != null) {
+			changeListener.visitedLocationAdded(this, visitedLocation);
+		}
+	}
+
+	/**
+	 * Sets the listener notified of the changes made from now on, null for none
+	 */
+	public synchronized void setChangeListener(UserChangeListener changeListener) {
+		this.changeListener = changeListener;
+	}
+
+	/**
+	 * Registers the user in the store, which then follows every new location. Does nothing if already registered.
+	 */
+	public synchronized void attachCurrentLocationStore(CurrentLocationStore store) {
+		if(currentLocationStore != null) {
+			return;
+		}
+		currentLocationStore = store;
+		currentLocationSlot = store.register(userId);
+		writeCurrentLocation(visitedLocations.last());
+	}
+
+	/**
+	 * @return the slot of the user in its current location store, -1 if not registered
+	 */
+	public synchronized int getCurrentLocationSlot() {
+		return currentLocationSlot;
+	}
+
+	private void writeCurrentLocation(VisitedLocation visitedLocation) {
+		if(currentLocationStore != null && visitedLocation != null && visitedLocation.location != null) {
+			long time = visitedLocation.timeVisited == null ? 0 : visitedLocation.timeVisited.getTime();
+			currentLocationStore.update(currentLocationSlot, visitedLocation.location.latitude, visitedLocation.location.longitude, time);
+		}
 	}
 	
-	public List<VisitedLocation> getVisitedLocations() {
-		return visitedLocations;
+	/**
+	 * @return a copy of the recent visited locations, oldest first
+	 */
+	public synchronized List<VisitedLocation> getVisitedLocations() {
+		return visitedLocations.toList();
+	}
+
+	/**
+	 * @return the older visited locations kept by the history compaction, oldest first
+	 */
+	public synchronized List<VisitedLocation> getCompactedVisitedLocations() {
+		return visitedLocations.compacted(userId);
+	}
+
+	/**
+	 * @return the sequence number the next visited location will get
+	 */
+	public synchronized long getVisitedLocationSequence() {
+		return visitedLocations.getSequence();
 	}
 	
-	public void clearVisitedLocations() {
+	public synchronized void clearVisitedLocations() {
 		visitedLocations.clear();
+		rewardsWatermark = visitedLocations.getSequence();
+	}
+
+	/**
+	 * @return a copy of the recent visited locations added since the last rewards evaluation
+	 */
+	public synchronized List<VisitedLocation> getVisitedLocationsSinceRewardsWatermark() {
+		return visitedLocations.since(rewardsWatermark);
+	}
+
+	/**
+	 * Marks every visited location with a sequence number below the given one as evaluated for rewards
+	 */
+	public synchronized void advanceRewardsWatermark(long sequence) {
+		rewardsWatermark = Math.max(rewardsWatermark, Math.min(sequence, visitedLocations.getSequence()));
+	}
+
+	public synchronized long getRewardsWatermark() {
+		return rewardsWatermark;
 	}
 	
-	public void addUserReward(UserReward userReward) {
-		//Issue in initial version fixed
-		//if(userRewards.stream().filter(r -> !r.attraction.attractionName.equals(userReward.attraction)).count() == 0) {
-		if(userRewards.stream().filter(r -> r.attraction.attractionName.equals(userReward.attraction.attractionName)).count() == 0) {
+	public synchronized void addUserReward(UserReward userReward) {
+		if(!userRewardsByAttraction.containsKey(userReward.attraction.attractionId)) {
+			userRewardsByAttraction.put(userReward.attraction.attractionId, userReward);
 			userRewards.add(userReward);
+			if(changeListener != null) {
+				changeListener.userRewardAdded(this, userReward);
+			}
 		}
 	}
+
+	public synchronized boolean hasRewardFor(Attraction attraction) {
+		return userRewardsByAttraction.containsKey(attraction.attractionId);
+	}
+
+	public synchronized int getRewardedAttractionCount() {
+		return userRewardsByAttraction.size();
+	}
 	
+	/**
+	 * @return a read-only list of the rewards in the order they were earned, safe to iterate while rewards are added
+	 */
 	public List<UserReward> getUserRewards() {
-		return userRewards;
+		return Collections.unmodifiableList(userRewards);
 	}
 	
-	public UserPreferences getUserPreferences() {
+	public synchronized UserPreferences getUserPreferences() {
 		return userPreferences;
 	}
 	
-	public void setUserPreferences(UserPreferences userPreferences) {
+	public synchronized void setUserPreferences(UserPreferences userPreferences) {
 		this.userPreferences = userPreferences;
+		if(changeListener != null) {
+			changeListener.userPreferencesChanged(this, userPreferences);
+		}
 	}
 
-	public VisitedLocation getLastVisitedLocation() {
-		return visitedLocations.get(visitedLocations.size() - 1);
+	/**
+	 * @return the most recent visited location, null if there is none
+	 */
+	public synchronized VisitedLocation getLastVisitedLocation() {
+		return visitedLocations.last();
 	}
 	
 	public void setTripDeals(List<Provider> tripDeals) {
@@ -0,0 +1,18 @@
+package tourGuide.domain.user;
+
+import tourGuide.domain.location.VisitedLocation;
+
+/**
+ * Notified of every change made to a user, while the user's lock is held
+ */
+public interface UserChangeListener {
+
+	void visitedLocationAdded(User user, VisitedLocation visitedLocation);
+
+	/**
+	 * Called only for rewards actually added, not for duplicates of an attraction already rewarded
+	 */
+	void userRewardAdded(User user, UserReward userReward);
+
+	void userPreferencesChanged(User user, UserPreferences userPreferences);
+}
@@ -0,0 +1,184 @@
+package tourGuide.domain.user;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+
+/**
+ * Bounded history of the locations visited by a user.
+ * The most recent locations are kept as is in a fixed-capacity ring buffer. A location pushed out of
+ * the ring is either dropped or, depending on the compaction policy, kept as three primitives
+ * (latitude, longitude, time) in a second, larger ring.
+ * Every location gets a sequence number, increasing for the whole life of the history, so that readers can
+ * ask for the locations added after a given point whatever was evicted in between.
+ * Not thread-safe: User synchronizes every access.
+ */
+public class VisitedLocationHistory {
+
+	public enum Compaction {
+		/** Evicted locations are dropped */
+		NONE,
+		/** Evicted locations are kept unless they repeat the last kept location */
+		DEDUPLICATE,
+		/** At most one evicted location is kept per downsampling interval */
+		DOWNSAMPLE
+	}
+
+	public static class Policy {
+		private final int capacity;
+		private final Compaction compaction;
+		private final int compactedCapacity;
+		private final long downsampleIntervalMillis;
+
+		public Policy(int capacity, Compaction compaction, int compactedCapacity, long downsampleIntervalMillis) {
+			this.capacity = Math.max(1, capacity);
+			this.compaction = compaction;
+			this.compactedCapacity = compaction == Compaction.NONE ? 0 : Math.max(0, compactedCapacity);
+			this.downsampleIntervalMillis = downsampleIntervalMillis;
+		}
+
+		public int getCapacity() {
+			return capacity;
+		}
+
+		public Compaction getCompaction() {
+			return compaction;
+		}
+	}
+
+	public static final Policy DEFAULT_POLICY = new Policy(100, Compaction.NONE, 0, 0);
+
+	private final Policy policy;
+	private final VisitedLocation[] recent;
+	// Sequence number of the next location, also the number of locations ever added
+	private long sequence = 0;
+	// Number of locations of the ring that are still readable (clear() empties the ring without resetting the sequence)
+	private int size = 0;
+
+	private final double[] compactedLatitudes;
+	private final double[] compactedLongitudes;
+	private final long[] compactedTimes;
+	private int compactedHead = 0;
+	private int compactedSize = 0;
+
+	public VisitedLocationHistory() {
+		this(DEFAULT_POLICY);
+	}
+
+	public VisitedLocationHistory(Policy policy) {
+		this.policy = policy;
+		this.recent = new VisitedLocation[policy.capacity];
+		this.compactedLatitudes = new double[policy.compactedCapacity];
+		this.compactedLongitudes = new double[policy.compactedCapacity];
+		this.compactedTimes = new long[policy.compactedCapacity];
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	public void add(VisitedLocation visitedLocation) {
+		int slot = (int) (sequence % recent.length);
+		if(size == recent.length) {
+			compact(recent[slot]);
+		} else {
+			size++;
+		}
+		recent[slot] = visitedLocation;
+		sequence++;
+	}
+
+	/**
+	 * @return the sequence number the next location will get
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the most recent location, null if there is none
+	 */
+	public VisitedLocation last() {
+		return size == 0 ? null : recent[(int) ((sequence - 1) % recent.length)];
+	}
+
+	/**
+	 * @return the recent locations whose sequence number is at least the given one, oldest first
+	 */
+	public List<VisitedLocation> since(long fromSequence) {
+		long first = Math.max(fromSequence, sequence - size);
+		if(first >= sequence) {
+			return Collections.emptyList();
+		}
+		List<VisitedLocation> result = new ArrayList<>((int) (sequence - first));
+		for(long s = first; s < sequence; s++) {
+			result.add(recent[(int) (s % recent.length)]);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the recent locations, oldest first
+	 */
+	public List<VisitedLocation> toList() {
+		return since(0);
+	}
+
+	/**
+	 * @return the compacted locations, oldest first, rebuilt for the given user
+	 */
+	public List<VisitedLocation> compacted(UUID userId) {
+		List<VisitedLocation> result = new ArrayList<>(compactedSize);
+		int start = compactedHead - compactedSize + compactedTimes.length;
+		for(int i = 0; i < compactedSize; i++) {
+			int index = (start + i) % compactedTimes.length;
+			result.add(new VisitedLocation(userId, new Location(compactedLatitudes[index], compactedLongitudes[index]), new Date(compactedTimes[index])));
+		}
+		return result;
+	}
+
+	/**
+	 * Drops every location, recent and compacted. Sequence numbers keep increasing.
+	 */
+	public void clear() {
+		Arrays.fill(recent, null);
+		size = 0;
+		compactedSize = 0;
+		compactedHead = 0;
+	}
+
+	private void compact(VisitedLocation evicted) {
+		if(compactedTimes.length == 0 || evicted == null || evicted.location == null) {
+			return;
+		}
+		double latitude = evicted.location.latitude;
+		double longitude = evicted.location.longitude;
+		long time = evicted.timeVisited == null ? 0 : evicted.timeVisited.getTime();
+		if(compactedSize > 0) {
+			int last = (compactedHead - 1 + compactedTimes.length) % compactedTimes.length;
+			if(policy.compaction == Compaction.DEDUPLICATE
+					&& compactedLatitudes[last] == latitude && compactedLongitudes[last] == longitude) {
+				return;
+			}
+			if(policy.compaction == Compaction.DOWNSAMPLE
+					&& Math.abs(time - compactedTimes[last]) < policy.downsampleIntervalMillis) {
+				return;
+			}
+		}
+		compactedLatitudes[compactedHead] = latitude;
+		compactedLongitudes[compactedHead] = longitude;
+		compactedTimes[compactedHead] = time;
+		compactedHead = (compactedHead + 1) % compactedTimes.length;
+		compactedSize = Math.min(compactedSize + 1, compactedTimes.length);
+	}
+}
@@ -0,0 +1,15 @@
+package tourGuide.gateway;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the downstream service does not expose the requested batch endpoint
+ */
+public class BatchEndpointUnavailableException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	public BatchEndpointUnavailableException(String message) {
+		super(message);
+	}
+}
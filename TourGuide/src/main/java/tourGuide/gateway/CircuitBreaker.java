@@ -0,0 +1,115 @@
+package tourGuide.gateway;
+
+/**
+ * Count-based circuit breaker. CLOSED: calls go through and the outcomes of the last windowSize are kept;
+ * once at least minimumCalls are known and their failure rate reaches the threshold, it opens.
+ * OPEN: calls fail fast for openMillis, then one trial call at a time is let through (HALF_OPEN):
+ * a success closes the circuit, a failure opens it again.
+ * Each permission belongs to the generation of the state it was granted in: the outcome of a call granted
+ * before the last change of state is ignored, so that a slow success from before the circuit opened
+ * cannot close it in place of the trial call.
+ */
+class CircuitBreaker {
+
+	enum State { CLOSED, OPEN, HALF_OPEN }
+
+	static final long NO_PERMISSION = -1;
+
+	private final boolean[] failures;
+	private final int minimumCalls;
+	private final double failureRateThreshold;
+	private final long openMillis;
+
+	private State state = State.CLOSED;
+	private int calls;
+	private int position;
+	private int failureCount;
+	private long openedAt;
+	private boolean trialInFlight;
+	private long generation;
+
+	CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, long openMillis) {
+		this.failures = new boolean[Math.max(1, windowSize)];
+		this.minimumCalls = Math.max(1, Math.min(minimumCalls, failures.length));
+		this.failureRateThreshold = failureRateThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * @return the permission to pass to onSuccess or onFailure once the call is done, NO_PERMISSION if the call may not go
+	 */
+	synchronized long tryAcquirePermission() {
+		if(state == State.OPEN) {
+			if(System.currentTimeMillis() - openedAt < openMillis) {
+				return NO_PERMISSION;
+			}
+			state = State.HALF_OPEN;
+			generation++;
+		}
+		if(state == State.HALF_OPEN) {
+			if(trialInFlight) {
+				return NO_PERMISSION;
+			}
+			trialInFlight = true;
+		}
+		return generation;
+	}
+
+	synchronized void onSuccess(long permission) {
+		if(permission != generation) {
+			return;
+		}
+		if(state == State.HALF_OPEN) {
+			reset(State.CLOSED);
+		} else if(state == State.CLOSED) {
+			record(false);
+		}
+	}
+
+	synchronized void onFailure(long permission) {
+		if(permission != generation) {
+			return;
+		}
+		if(state == State.HALF_OPEN) {
+			open();
+		} else if(state == State.CLOSED) {
+			record(true);
+			if(calls >= minimumCalls && failureCount >= failureRateThreshold * calls) {
+				open();
+			}
+		}
+	}
+
+	synchronized State getState() {
+		return state;
+	}
+
+	private void record(boolean failure) {
+		if(calls == failures.length) {
+			if(failures[position]) {
+				failureCount--;
+			}
+		} else {
+			calls++;
+		}
+		failures[position] = failure;
+		if(failure) {
+			failureCount++;
+		}
+		position = (position + 1) % failures.length;
+	}
+
+	private void open() {
+		reset(State.OPEN);
+		openedAt = System.currentTimeMillis();
+	}
+
+	private void reset(State next) {
+		state = next;
+		generation++;
+		calls = 0;
+		position = 0;
+		failureCount = 0;
+		trialInFlight = false;
+	}
+}
@@ -0,0 +1,24 @@
+package tourGuide.gateway;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown when the answer of a failed downstream call is needed, answered 503 to web clients
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DownstreamException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final DownstreamResult.Failure failure;
+
+	public DownstreamException(DownstreamResult<?> result) {
+		super(result.getFailure() + ": " + result.getMessage(), result.getCause());
+		this.failure = result.getFailure();
+	}
+
+	public DownstreamResult.Failure getFailure() {
+		return failure;
+	}
+}
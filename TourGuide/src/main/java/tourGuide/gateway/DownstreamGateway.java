@@ -0,0 +1,293 @@
+package tourGuide.gateway;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.tripdeal.Provider;
+import tourGuide.domain.user.RewardPointsRequest;
+
+/**
+ * Single entry point to the GPS, Rewards and TripPricer services.
+ * Each service has its own long-lived HttpClient (connection reuse, HTTP/2 when the server accepts it),
+ * timeouts, bulkhead and circuit breaker (see ResilientClient), so that one slow or failing service
+ * cannot hold the threads and connections the others need.
+ * One pre-built reader per response type is shared by every caller.
+ * Calls answer a DownstreamResult: a failure is never disguised as an empty or zero value.
+ * Every call is timed in tourguide.downstream.requests, tagged by endpoint and outcome
+ * (SUCCESS or the DownstreamResult.Failure).
+ */
+@Component
+public class DownstreamGateway {
+	private Logger logger = LoggerFactory.getLogger(DownstreamGateway.class);
+
+	private final ResilientClient gps;
+	private final ResilientClient rewards;
+	private final ResilientClient tripPricer;
+	private final String gpsUrl;
+	private final String rewardsUrl;
+	private final String tripPricerUrl;
+
+	private final ObjectReader attractionsReader;
+	private final ObjectReader visitedLocationReader;
+	private final ObjectReader providersReader;
+	private final ObjectReader rewardPointsBatchReader;
+	private final ObjectWriter rewardPointsBatchWriter;
+
+	private static final String USER_LOCATION = "getUserLocation";
+	private static final String ATTRACTIONS = "getAttractions";
+	private static final String REWARD_POINTS = "getRewardPoints";
+	private static final String REWARD_POINTS_BATCH = "getRewardPointsBatch";
+	private static final String PRICE = "getPrice";
+
+	private static final String SUCCESS = "SUCCESS";
+
+	private final MeterRegistry meterRegistry;
+	// Timers by endpoint, indexed by outcome: SUCCESS first, then each failure
+	private final Map<String, Timer[]> timers = new HashMap<>();
+
+	@FunctionalInterface
+	private interface BodyReader<T> {
+		T read(String body) throws IOException;
+	}
+
+	public DownstreamGateway() {
+		this(new TourGuideProperties());
+	}
+
+	public DownstreamGateway(TourGuideProperties properties) {
+		this(properties, new SimpleMeterRegistry());
+	}
+
+	@Autowired
+	public DownstreamGateway(TourGuideProperties properties, MeterRegistry meterRegistry) {
+		this.meterRegistry = meterRegistry;
+		DownstreamResult.Failure[] failures = DownstreamResult.Failure.values();
+		for(String endpoint : new String[] { USER_LOCATION, ATTRACTIONS, REWARD_POINTS, REWARD_POINTS_BATCH, PRICE }) {
+			Timer[] endpointTimers = new Timer[failures.length + 1];
+			for(int i = 0; i < endpointTimers.length; i++) {
+				endpointTimers[i] = Timer.builder("tourguide.downstream.requests")
+						.description("Calls to the GPS, Rewards and TripPricer services")
+						.tag("endpoint", endpoint)
+						.tag("outcome", i == 0 ? SUCCESS : failures[i - 1].name())
+						.publishPercentileHistogram()
+						.register(meterRegistry);
+			}
+			timers.put(endpoint, endpointTimers);
+		}
+		TourGuideProperties.Downstream downstream = properties.getDownstream();
+		this.gpsUrl = downstream.getGpsUrl();
+		this.rewardsUrl = downstream.getRewardsUrl();
+		this.tripPricerUrl = downstream.getTripPricerUrl();
+		HttpClient.Version version = HttpClient.Version.valueOf(downstream.getHttpVersion());
+		// A few threads are enough to complete asynchronous exchanges; 0 keeps the JDK default executor
+		Executor executor = null;
+		if(downstream.getClientThreads() > 0) {
+			AtomicInteger threadCount = new AtomicInteger();
+			executor = Executors.newFixedThreadPool(downstream.getClientThreads(), runnable -> {
+				Thread thread = new Thread(runnable, "downstream-client-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		this.gps = new ResilientClient("gps", version, executor, downstream.getGps(), meterRegistry);
+		this.rewards = new ResilientClient("rewards", version, executor, downstream.getRewards(), meterRegistry);
+		this.tripPricer = new ResilientClient("tripPricer", version, executor, downstream.getTripPricer(), meterRegistry);
+
+		ObjectMapper mapper = new ObjectMapper();
+		this.attractionsReader = mapper.readerFor(new TypeReference<List<Attraction>>(){ });
+		this.visitedLocationReader = mapper.readerFor(VisitedLocation.class);
+		this.providersReader = mapper.readerFor(new TypeReference<List<Provider>>(){ });
+		this.rewardPointsBatchReader = mapper.readerFor(int[].class);
+		this.rewardPointsBatchWriter = mapper.writerFor(new TypeReference<List<RewardPointsRequest>>(){ });
+	}
+
+	public MeterRegistry getMeterRegistry() {
+		return meterRegistry;
+	}
+
+	// Appel gpsService.getAttractions
+	public DownstreamResult<List<Attraction>> getAttractions() {
+		return await(getAsync(gps, ATTRACTIONS, gpsUrl + "/getAttractions", true, attractionsReader::readValue));
+	}
+
+	// Appel gpsService.getUserLocation
+	public DownstreamResult<VisitedLocation> getUserLocation(UUID userId) {
+		return await(getUserLocation(userId, true));
+	}
+
+	/**
+	 * Non-blocking variant of getUserLocation: no thread waits for the GPS service while the request is in flight,
+	 * nor for a place in its bulkhead. The future never completes exceptionally.
+	 */
+	public CompletableFuture<DownstreamResult<VisitedLocation>> getUserLocationAsync(UUID userId) {
+		return getUserLocation(userId, false);
+	}
+
+	private CompletableFuture<DownstreamResult<VisitedLocation>> getUserLocation(UUID userId, boolean waitForBulkhead) {
+		return getAsync(gps, USER_LOCATION, gpsUrl + "/getUserLocation?userId=" + userId, waitForBulkhead, body -> {
+			VisitedLocation visitedLocation = visitedLocationReader.readValue(body);
+			if(visitedLocation.location == null) {
+				throw new IOException("No location in " + body);
+			}
+			return visitedLocation;
+		});
+	}
+
+	// Appel rewardsService.getAttractionRewardPoints
+	public DownstreamResult<Integer> getRewardPoints(UUID attractionId, UUID userId) {
+		return await(getRewardPoints(attractionId, userId, true));
+	}
+
+	/**
+	 * Non-blocking variant of getRewardPoints: no thread waits for the Rewards service while the request is in flight,
+	 * nor for a place in its bulkhead. The future never completes exceptionally.
+	 */
+	public CompletableFuture<DownstreamResult<Integer>> getRewardPointsAsync(UUID attractionId, UUID userId) {
+		return getRewardPoints(attractionId, userId, false);
+	}
+
+	private CompletableFuture<DownstreamResult<Integer>> getRewardPoints(UUID attractionId, UUID userId, boolean waitForBulkhead) {
+		return getAsync(rewards, REWARD_POINTS, rewardsUrl + "/getRewardPoints?attractionId=" + attractionId + "&userId=" + userId, waitForBulkhead, body -> {
+			try {
+				return Integer.valueOf(body.trim());
+			} catch (NumberFormatException e) {
+				throw new IOException("Not a number of points: " + body, e);
+			}
+		});
+	}
+
+	/**
+	 * Asks the Rewards service for the points of many pairs in one round trip:
+	 * POST /getRewardPointsBatch with a JSON array of {attractionId, userId},
+	 * answered by a JSON array of points in the same order.
+	 * @throws BatchEndpointUnavailableException if the Rewards service has no batch endpoint
+	 * @throws IOException on any other failure, including an open circuit or a full bulkhead
+	 */
+	public int[] getRewardPointsBatch(List<RewardPointsRequest> requests) throws IOException, InterruptedException {
+		try {
+			return getRewardPointsBatchAsync(requests).get();
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("getRewardPointsBatch failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Non-blocking variant of getRewardPointsBatch: no thread waits for the Rewards service while the request
+	 * is in flight, nor for a place in its bulkhead. The future completes exceptionally with
+	 * BatchEndpointUnavailableException if the Rewards service has no batch endpoint, IOException on any other failure.
+	 */
+	public CompletableFuture<int[]> getRewardPointsBatchAsync(List<RewardPointsRequest> requests) {
+		HttpRequest.Builder request;
+		try {
+			request = HttpRequest.newBuilder()
+					.uri(URI.create(rewardsUrl + "/getRewardPointsBatch"))
+					.header("Content-Type", "application/json")
+					.POST(HttpRequest.BodyPublishers.ofByteArray(rewardPointsBatchWriter.writeValueAsBytes(requests)));
+		} catch (IOException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		long start = System.nanoTime();
+		return rewards.send(request, false, false).thenCompose(response -> {
+			// Expected from a Rewards service without batch endpoint: not worth the warning read logs for a failure
+			int statusCode = response.getStatusCode();
+			if(statusCode == 404 || statusCode == 405 || statusCode == 501) {
+				record(REWARD_POINTS_BATCH, response, start);
+				return CompletableFuture.failedFuture(new BatchEndpointUnavailableException("Rewards service answered " + statusCode + " to getRewardPointsBatch"));
+			}
+			DownstreamResult<int[]> result = read(response, body -> {
+				int[] rewardPoints = rewardPointsBatchReader.readValue(body);
+				if(rewardPoints.length != requests.size()) {
+					throw new IOException("Rewards service answered " + rewardPoints.length + " points for " + requests.size() + " requests");
+				}
+				return rewardPoints;
+			});
+			record(REWARD_POINTS_BATCH, result, start);
+			if(result.isSuccess()) {
+				return CompletableFuture.completedFuture(result.getValue());
+			}
+			return CompletableFuture.failedFuture(new IOException(result.getMessage(), result.getCause()));
+		});
+	}
+
+	// Appel preferencesService.getPrice
+	public DownstreamResult<List<Provider>> getPrice(String apiKey, UUID attractionId, int adults, int children, int nightsStay, int rewardsPoints) {
+		return await(getAsync(tripPricer, PRICE, tripPricerUrl + "/getPrice?apiKey=" + apiKey + "&attractionId=" + attractionId + "&adults=" + adults + "&children=" + children + "&nightsStay=" + nightsStay + "&rewardsPoints=" + rewardsPoints, true, providersReader::readValue));
+	}
+
+	private <T> CompletableFuture<DownstreamResult<T>> getAsync(ResilientClient downstream, String endpoint, String requestURI, boolean waitForBulkhead, BodyReader<T> reader) {
+		HttpRequest.Builder request = HttpRequest.newBuilder()
+				.uri(URI.create(requestURI))
+				.GET();
+		long start = System.nanoTime();
+		return downstream.send(request, true, waitForBulkhead)
+				.thenApply(response -> {
+					DownstreamResult<T> result = read(response, reader);
+					record(endpoint, result, start);
+					return result;
+				});
+	}
+
+	private <T> DownstreamResult<T> read(DownstreamResult<String> response, BodyReader<T> reader) {
+		if(!response.isSuccess()) {
+			// An open circuit or a full bulkhead fails many calls in a row, one line each would flood the log
+			if(response.getFailure() == DownstreamResult.Failure.CIRCUIT_OPEN || response.getFailure() == DownstreamResult.Failure.BULKHEAD_FULL) {
+				logger.debug("{}", response.getMessage());
+			} else {
+				logger.warn("{}", response.getMessage());
+			}
+			return response.asFailure();
+		}
+		try {
+			return DownstreamResult.success(reader.read(response.getValue()));
+		} catch (IOException e) {
+			logger.warn("Unreadable answer: {}", e.getMessage());
+			return DownstreamResult.failure(DownstreamResult.Failure.INVALID_RESPONSE, e.getMessage(), e);
+		}
+	}
+
+	private static <T> DownstreamResult<T> await(CompletableFuture<DownstreamResult<T>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return DownstreamResult.failure(DownstreamResult.Failure.INTERRUPTED, "Interrupted while waiting for the answer", e);
+		} catch (ExecutionException e) {
+			return DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, "Call failed", e.getCause());
+		}
+	}
+
+	private void record(String endpoint, DownstreamResult<?> result, long start) {
+		int outcome = result.isSuccess() ? 0 : result.getFailure().ordinal() + 1;
+		timers.get(endpoint)[outcome].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,112 @@
+package tourGuide.gateway;
+
+/**
+ * Outcome of a call to a downstream service: the answer, or why there is none
+ */
+public final class DownstreamResult<T> {
+
+	public enum Failure {
+		/** No answer within the connect or read timeout */
+		TIMEOUT,
+		/** Not sent: the circuit breaker of the service is open */
+		CIRCUIT_OPEN,
+		/** Not sent: the service already has as many calls in flight as its bulkhead allows */
+		BULKHEAD_FULL,
+		/** Answered with a 4xx status */
+		CLIENT_ERROR,
+		/** Answered with a 5xx status */
+		SERVER_ERROR,
+		/** Connection failed or was lost */
+		IO_ERROR,
+		/** Answered with a body that could not be read */
+		INVALID_RESPONSE,
+		/** The calling thread was interrupted while waiting */
+		INTERRUPTED
+	}
+
+	private final T value;
+	private final Failure failure;
+	private final int statusCode;
+	private final String message;
+	private final Throwable cause;
+
+	private DownstreamResult(T value, Failure failure, int statusCode, String message, Throwable cause) {
+		this.value = value;
+		this.failure = failure;
+		this.statusCode = statusCode;
+		this.message = message;
+		this.cause = cause;
+	}
+
+	public static <T> DownstreamResult<T> success(T value) {
+		return new DownstreamResult<>(value, null, 200, null, null);
+	}
+
+	public static <T> DownstreamResult<T> failure(Failure failure, String message) {
+		return new DownstreamResult<>(null, failure, 0, message, null);
+	}
+
+	public static <T> DownstreamResult<T> failure(Failure failure, String message, Throwable cause) {
+		return new DownstreamResult<>(null, failure, 0, message, cause);
+	}
+
+	public static <T> DownstreamResult<T> httpFailure(int statusCode, String message) {
+		return new DownstreamResult<>(null, statusCode >= 500 ? Failure.SERVER_ERROR : Failure.CLIENT_ERROR, statusCode, message, null);
+	}
+
+	/**
+	 * @return the same failure, for another type of value
+	 */
+	@SuppressWarnings("unchecked")
+	public <U> DownstreamResult<U> asFailure() {
+		if(isSuccess()) {
+			throw new IllegalStateException("Not a failure");
+		}
+		return (DownstreamResult<U>) this;
+	}
+
+	public boolean isSuccess() {
+		return failure == null;
+	}
+
+	/**
+	 * @return the failure, null on success
+	 */
+	public Failure getFailure() {
+		return failure;
+	}
+
+	/**
+	 * @return the HTTP status of the answer, 0 if none came back
+	 */
+	public int getStatusCode() {
+		return statusCode;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public Throwable getCause() {
+		return cause;
+	}
+
+	/**
+	 * @throws DownstreamException on failure
+	 */
+	public T getValue() {
+		if(failure != null) {
+			throw new DownstreamException(this);
+		}
+		return value;
+	}
+
+	public T orElse(T other) {
+		return failure == null ? value : other;
+	}
+
+	@Override
+	public String toString() {
+		return failure == null ? "DownstreamResult[" + value + "]" : "DownstreamResult[" + failure + ": " + message + "]";
+	}
+}
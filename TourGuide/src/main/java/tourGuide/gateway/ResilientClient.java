@@ -0,0 +1,175 @@
+package tourGuide.gateway;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import tourGuide.configuration.TourGuideProperties;
+
+/**
+ * HTTP client of one downstream service, with its own connections, and the protections of that service only,
+ * so that a degraded service cannot take the capacity of the others:
+ * connect and read timeouts, a bulkhead capping its calls in flight, a circuit breaker failing calls fast
+ * while it keeps failing, and optionally a hedged second request for GETs slower than hedgeDelayMillis
+ * (both attempts share one place in the bulkhead, the first good answer wins and the other attempt is cancelled).
+ * Calls never complete exceptionally: every failure is a DownstreamResult.
+ */
+class ResilientClient {
+
+	private final String service;
+	private final HttpClient client;
+	private final Duration readTimeout;
+	private final Semaphore bulkhead;
+	private final int maxConcurrentCalls;
+	private final long maxWaitMillis;
+	private final CircuitBreaker circuitBreaker;
+	private final long hedgeDelayMillis;
+	private final Counter hedges;
+
+	ResilientClient(String service, HttpClient.Version version, Executor executor, TourGuideProperties.Resilience resilience, MeterRegistry meterRegistry) {
+		this.service = service;
+		HttpClient.Builder clientBuilder = HttpClient.newBuilder()
+				.version(version)
+				.connectTimeout(Duration.ofMillis(resilience.getConnectTimeoutMillis()));
+		if(executor != null) {
+			clientBuilder.executor(executor);
+		}
+		this.client = clientBuilder.build();
+		this.readTimeout = Duration.ofMillis(resilience.getReadTimeoutMillis());
+		this.maxConcurrentCalls = Math.max(1, resilience.getMaxConcurrentCalls());
+		this.bulkhead = new Semaphore(maxConcurrentCalls);
+		this.maxWaitMillis = Math.max(0, resilience.getMaxWaitMillis());
+		this.circuitBreaker = new CircuitBreaker(resilience.getCircuitWindowSize(), resilience.getCircuitMinimumCalls(),
+				resilience.getCircuitFailureRateThreshold(), resilience.getCircuitOpenMillis());
+		this.hedgeDelayMillis = resilience.getHedgeDelayMillis();
+
+		this.hedges = Counter.builder("tourguide.downstream.hedges")
+				.description("Second requests sent because the first one was slow")
+				.tag("service", service)
+				.register(meterRegistry);
+		Gauge.builder("tourguide.downstream.circuit.state", circuitBreaker, breaker -> breaker.getState().ordinal())
+				.description("0 closed, 1 open, 2 half open")
+				.tag("service", service)
+				.register(meterRegistry);
+		Gauge.builder("tourguide.downstream.bulkhead.available", bulkhead, Semaphore::availablePermits)
+				.tag("service", service)
+				.register(meterRegistry);
+	}
+
+	/**
+	 * @param idempotent true if the request may be hedged
+	 * @param waitForBulkhead true to wait up to maxWaitMillis for a place in the bulkhead, false to fail at once
+	 * @return the body of the answer
+	 */
+	CompletableFuture<DownstreamResult<String>> send(HttpRequest.Builder requestBuilder, boolean idempotent, boolean waitForBulkhead) {
+		HttpRequest request = requestBuilder.timeout(readTimeout).build();
+		String path = request.uri().getPath();
+		try {
+			if(!(waitForBulkhead ? bulkhead.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS) : bulkhead.tryAcquire())) {
+				return CompletableFuture.completedFuture(DownstreamResult.failure(DownstreamResult.Failure.BULKHEAD_FULL,
+						service + " already has " + maxConcurrentCalls + " calls in flight, " + path + " not sent"));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.completedFuture(DownstreamResult.failure(DownstreamResult.Failure.INTERRUPTED,
+					"Interrupted while waiting for a place in the " + service + " bulkhead", e));
+		}
+		long permission = circuitBreaker.tryAcquirePermission();
+		if(permission == CircuitBreaker.NO_PERMISSION) {
+			bulkhead.release();
+			return CompletableFuture.completedFuture(DownstreamResult.failure(DownstreamResult.Failure.CIRCUIT_OPEN,
+					service + " circuit is open, " + path + " not sent"));
+		}
+
+		CompletableFuture<HttpResponse<String>> response;
+		try {
+			response = idempotent && hedgeDelayMillis > 0 ? sendHedged(request) : client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+		} catch (RuntimeException e) {
+			response = CompletableFuture.failedFuture(e);
+		}
+		return response.handle((answer, e) -> {
+			bulkhead.release();
+			DownstreamResult<String> result = toResult(path, answer, e);
+			// A 4xx is the caller's fault, the service itself is fine
+			if(result.isSuccess() || result.getFailure() == DownstreamResult.Failure.CLIENT_ERROR) {
+				circuitBreaker.onSuccess(permission);
+			} else {
+				circuitBreaker.onFailure(permission);
+			}
+			return result;
+		});
+	}
+
+	CircuitBreaker.State getCircuitState() {
+		return circuitBreaker.getState();
+	}
+
+	/**
+	 * Sends the request, and again if it has not been answered after hedgeDelayMillis.
+	 * Completes with the first answer below 500, or with the last failure once both attempts failed.
+	 * Once it completes, the attempt still in flight is cancelled.
+	 */
+	private CompletableFuture<HttpResponse<String>> sendHedged(HttpRequest request) {
+		CompletableFuture<HttpResponse<String>> first = new CompletableFuture<>();
+		AtomicInteger pendingAttempts = new AtomicInteger(1);
+		BiConsumer<HttpResponse<String>, Throwable> onAttempt = (response, e) -> {
+			if(e == null && response.statusCode() < 500) {
+				first.complete(response);
+			} else if(pendingAttempts.decrementAndGet() == 0) {
+				if(e != null) {
+					first.completeExceptionally(e);
+				} else {
+					first.complete(response);
+				}
+			}
+		};
+		attempt(request, first, onAttempt);
+		CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS).execute(() -> {
+			// Once the first attempt has failed there is nothing left to hedge
+			if(first.isDone() || pendingAttempts.getAndIncrement() == 0) {
+				return;
+			}
+			hedges.increment();
+			attempt(request, first, onAttempt);
+		});
+		return first;
+	}
+
+	private void attempt(HttpRequest request, CompletableFuture<HttpResponse<String>> first, BiConsumer<HttpResponse<String>, Throwable> onAttempt) {
+		CompletableFuture<HttpResponse<String>> attempt = client.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+		attempt.whenComplete(onAttempt);
+		// No effect on the attempt that won
+		first.whenComplete((response, e) -> attempt.cancel(true));
+	}
+
+	private DownstreamResult<String> toResult(String path, HttpResponse<String> response, Throwable e) {
+		if(e != null) {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if(cause instanceof HttpTimeoutException) {
+				return DownstreamResult.failure(DownstreamResult.Failure.TIMEOUT, service + " did not answer " + path + " in time", cause);
+			}
+			if(cause instanceof IOException) {
+				return DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, service + " call to " + path + " failed", cause);
+			}
+			return DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, service + " call to " + path + " could not be sent", cause);
+		}
+		if(response.statusCode() >= 400) {
+			return DownstreamResult.httpFailure(response.statusCode(), service + " answered " + response.statusCode() + " to " + path);
+		}
+		return DownstreamResult.success(response.body());
+	}
+}
@@ -0,0 +1,17 @@
+package tourGuide.geo;
+
+import tourGuide.domain.location.Attraction;
+
+/**
+ * An attraction together with its distance (in statute miles) to a queried location
+ */
+public class AttractionDistance {
+
+	public final Attraction attraction;
+	public final double distance;
+
+	public AttractionDistance(Attraction attraction, double distance) {
+		this.attraction = attraction;
+		this.distance = distance;
+	}
+}
@@ -0,0 +1,89 @@
+package tourGuide.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+
+/**
+ * Radius and nearest-K queries over the attractions of the catalog, answered by a linear DistanceKernel
+ * scan: with the few dozen attractions the GPS service publishes, a spatial tree would cost more than it prunes.
+ * Positions returned by the batch methods are resolved with attraction(int).
+ */
+public class AttractionIndex {
+
+	private final Attraction[] attractions;
+	private final DistanceKernel kernel;
+
+	public AttractionIndex(List<Attraction> attractionList) {
+		this.attractions = attractionList.toArray(new Attraction[0]);
+		this.kernel = new DistanceKernel(Arrays.asList(attractions));
+	}
+
+	public int size() {
+		return attractions.length;
+	}
+
+	public Attraction attraction(int position) {
+		return attractions[position];
+	}
+
+	/**
+	 * @return every attraction whose distance to the location is at most the given number of miles
+	 */
+	public List<Attraction> withinRadius(Location location, double miles) {
+		if(location == null || attractions.length == 0) {
+			return Collections.emptyList();
+		}
+		int[] positions = new int[attractions.length];
+		int count = withinRadius(location, miles, positions);
+		List<Attraction> result = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			result.add(attractions[positions[i]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Batch variant of withinRadius: positions holds at least size() elements and can be reused across calls
+	 * @return the number of positions written
+	 */
+	public int withinRadius(Location location, double miles, int[] positions) {
+		if(location == null || attractions.length == 0) {
+			return 0;
+		}
+		return kernel.withinRadius(location, miles, positions);
+	}
+
+	/**
+	 * @return the k attractions closest to the location, nearest first
+	 */
+	public List<AttractionDistance> nearest(Location location, int k) {
+		if(location == null || attractions.length == 0 || k <= 0) {
+			return Collections.emptyList();
+		}
+		int capacity = Math.min(k, attractions.length);
+		int[] positions = new int[capacity];
+		double[] miles = new double[capacity];
+		int count = nearest(location, capacity, positions, miles);
+		List<AttractionDistance> result = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			result.add(new AttractionDistance(attractions[positions[i]], miles[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Batch variant of nearest: positions and miles hold at least min(k, size()) elements
+	 * @return the number of attractions written, nearest first
+	 */
+	public int nearest(Location location, int k, int[] positions, double[] miles) {
+		if(location == null || attractions.length == 0 || k <= 0) {
+			return 0;
+		}
+		return kernel.nearest(location, k, positions, miles);
+	}
+}
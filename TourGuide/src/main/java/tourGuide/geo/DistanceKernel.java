@@ -0,0 +1,159 @@
+package tourGuide.geo;
+
+import java.util.List;
+
+import tourGuide.domain.location.Location;
+
+/**
+ * Great-circle distances from one location to many, over locations stored as parallel primitive arrays
+ * (latitude and longitude in radians, cosine of latitude, sine and cosine of half the latitude) computed once.
+ * Distances use the haversine formula, which unlike acos of the spherical law of cosines keeps its precision
+ * at short range. Comparisons are made on the haversine term itself: a latitude bound rejects most
+ * locations before any trigonometry, and asin is only taken for the distances that are returned.
+ * The batch methods write into arrays supplied by the caller and allocate nothing.
+ */
+public class DistanceKernel {
+
+	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
+	// 60 nautical miles per degree of arc
+	public static final double STATUTE_MILES_PER_RADIAN = STATUTE_MILES_PER_NAUTICAL_MILE * 60 * Math.toDegrees(1);
+	private static final double HAVERSINE_EPSILON = 1e-15;
+
+	private final double[] latitudes;
+	private final double[] longitudes;
+	private final double[] cosLatitudes;
+	private final double[] sinHalfLatitudes;
+	private final double[] cosHalfLatitudes;
+
+	public DistanceKernel(List<? extends Location> locations) {
+		int size = locations.size();
+		this.latitudes = new double[size];
+		this.longitudes = new double[size];
+		this.cosLatitudes = new double[size];
+		this.sinHalfLatitudes = new double[size];
+		this.cosHalfLatitudes = new double[size];
+		for(int i = 0; i < size; i++) {
+			Location location = locations.get(i);
+			latitudes[i] = Math.toRadians(location.latitude);
+			longitudes[i] = Math.toRadians(location.longitude);
+			cosLatitudes[i] = Math.cos(latitudes[i]);
+			sinHalfLatitudes[i] = Math.sin(latitudes[i] / 2);
+			cosHalfLatitudes[i] = Math.cos(latitudes[i] / 2);
+		}
+	}
+
+	public int size() {
+		return latitudes.length;
+	}
+
+	/**
+	 * @return the distance in statute miles between two locations
+	 */
+	public static double distance(Location location1, Location location2) {
+		double lat1 = Math.toRadians(location1.latitude);
+		double lat2 = Math.toRadians(location2.latitude);
+		double lon1 = Math.toRadians(location1.longitude);
+		double lon2 = Math.toRadians(location2.longitude);
+		return toMiles(haversine(lat1, Math.cos(lat1), lat2, lon2 - lon1, Math.cos(lat2)));
+	}
+
+	/**
+	 * Fills miles[i] with the distance from the location to the i-th location of the kernel
+	 */
+	public void distancesFrom(Location location, double[] miles) {
+		double lat = Math.toRadians(location.latitude);
+		double lon = Math.toRadians(location.longitude);
+		double cosLat = Math.cos(lat);
+		for(int i = 0; i < latitudes.length; i++) {
+			miles[i] = toMiles(haversine(lat, cosLat, latitudes[i], longitudes[i] - lon, cosLatitudes[i]));
+		}
+	}
+
+	/**
+	 * Writes the positions of the locations at most the given number of miles away into indexes
+	 * @return the number of positions written
+	 */
+	public int withinRadius(Location location, double miles, int[] indexes) {
+		if(miles < 0) {
+			return 0;
+		}
+		double angle = miles / STATUTE_MILES_PER_RADIAN;
+		int count = 0;
+		if(angle >= Math.PI) {
+			for(int i = 0; i < latitudes.length; i++) {
+				indexes[count++] = i;
+			}
+			return count;
+		}
+		double sinHalfAngle = Math.sin(angle / 2);
+		double maxHaversine = sinHalfAngle * sinHalfAngle + HAVERSINE_EPSILON;
+		double lat = Math.toRadians(location.latitude);
+		double lon = Math.toRadians(location.longitude);
+		double cosLat = Math.cos(lat);
+		for(int i = 0; i < latitudes.length; i++) {
+			// The distance is at least the difference of latitudes
+			if(Math.abs(latitudes[i] - lat) > angle) {
+				continue;
+			}
+			if(haversine(lat, cosLat, latitudes[i], longitudes[i] - lon, cosLatitudes[i]) <= maxHaversine) {
+				indexes[count++] = i;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Writes the positions of the k closest locations into indexes and their distances into miles, nearest first
+	 * @return the number of positions written, min(k, size)
+	 */
+	public int nearest(Location location, int k, int[] indexes, double[] miles) {
+		int capacity = Math.min(k, latitudes.length);
+		if(capacity <= 0) {
+			return 0;
+		}
+		double lat = Math.toRadians(location.latitude);
+		double lon = Math.toRadians(location.longitude);
+		double cosLat = Math.cos(lat);
+		double sinHalfLat = Math.sin(lat / 2);
+		double cosHalfLat = Math.cos(lat / 2);
+		int count = 0;
+		for(int i = 0; i < latitudes.length; i++) {
+			// sin(Δlat/2) by the angle difference identity, without trigonometry
+			double sinHalfLatitude = sinHalfLatitudes[i] * cosHalfLat - cosHalfLatitudes[i] * sinHalfLat;
+			double latitudeTerm = sinHalfLatitude * sinHalfLatitude;
+			// The haversine term is at least sin²(Δlat/2)
+			if(count == capacity && latitudeTerm >= miles[count - 1]) {
+				continue;
+			}
+			double sinHalfLongitude = Math.sin((longitudes[i] - lon) / 2);
+			double h = latitudeTerm + cosLat * cosLatitudes[i] * sinHalfLongitude * sinHalfLongitude;
+			if(count == capacity && h >= miles[count - 1]) {
+				continue;
+			}
+			// Insertion into the sorted prefix, dropping the farthest when full
+			int position = count < capacity ? count++ : count - 1;
+			while(position > 0 && miles[position - 1] > h) {
+				indexes[position] = indexes[position - 1];
+				miles[position] = miles[position - 1];
+				position--;
+			}
+			indexes[position] = i;
+			miles[position] = h;
+		}
+		for(int i = 0; i < count; i++) {
+			miles[i] = toMiles(miles[i]);
+		}
+		return count;
+	}
+
+	// sin²(Δlat/2) + cos(lat1)·cos(lat2)·sin²(Δlon/2)
+	private static double haversine(double lat1, double cosLat1, double lat2, double deltaLongitude, double cosLat2) {
+		double sinHalfLatitude = Math.sin((lat2 - lat1) / 2);
+		double sinHalfLongitude = Math.sin(deltaLongitude / 2);
+		return sinHalfLatitude * sinHalfLatitude + cosLat1 * cosLat2 * sinHalfLongitude * sinHalfLongitude;
+	}
+
+	private static double toMiles(double haversine) {
+		return 2 * Math.asin(Math.sqrt(Math.min(1, haversine))) * STATUTE_MILES_PER_RADIAN;
+	}
+}
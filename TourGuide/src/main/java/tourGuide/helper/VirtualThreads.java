@@ -0,0 +1,50 @@
+package tourGuide.helper;
+
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Access to virtual threads without compiling against a JDK that has them.
+ * On Java 11 (or a JDK where they are still a disabled preview) nothing is returned and callers
+ * keep their platform thread pools.
+ */
+public class VirtualThreads {
+	private static Logger logger = LoggerFactory.getLogger(VirtualThreads.class);
+
+	private static final Method newVirtualThreadPerTaskExecutor = lookup();
+
+	private static Method lookup() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			// Preview JDKs expose the method but throw when preview features are disabled
+			((ExecutorService) method.invoke(null)).shutdown();
+			return method;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	public static boolean isSupported() {
+		return newVirtualThreadPerTaskExecutor != null;
+	}
+
+	/**
+	 * @return an executor starting one virtual thread per task, or empty when the JVM has no virtual threads
+	 */
+	public static Optional<ExecutorService> newVirtualThreadPerTaskExecutor() {
+		if(!isSupported()) {
+			return Optional.empty();
+		}
+		try {
+			return Optional.of((ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null));
+		} catch (ReflectiveOperationException e) {
+			logger.warn("Virtual threads unavailable", e);
+			return Optional.empty();
+		}
+	}
+}
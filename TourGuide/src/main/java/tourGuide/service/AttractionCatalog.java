@@ -0,0 +1,142 @@
+package tourGuide.service;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+
+/**
+ * Keeps the GPS attraction list in memory.
+ * The list is loaded at startup on the refresh thread, so that nothing waits for the GPS service to build the
+ * catalog, then refreshed in the background; readers only ever dereference the current snapshot, empty until
+ * the first load, and never call the GPS service themselves.
+ * Until a first load succeeds it is retried with a short, growing backoff rather than at the refresh interval.
+ */
+@Service
+public class AttractionCatalog {
+	private Logger logger = LoggerFactory.getLogger(AttractionCatalog.class);
+
+	private final DownstreamGateway downstreamGateway;
+	private final long refreshIntervalSeconds;
+	private final long firstLoadMaxRetryMillis;
+	private final AtomicReference<AttractionSnapshot> snapshot = new AtomicReference<>(AttractionSnapshot.empty());
+	private final CountDownLatch firstLoadAttempted = new CountDownLatch(1);
+	private final ScheduledExecutorService refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "attraction-catalog-refresh");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public AttractionCatalog(DownstreamGateway downstreamGateway) {
+		this(downstreamGateway, new TourGuideProperties());
+	}
+
+	@Autowired
+	public AttractionCatalog(DownstreamGateway downstreamGateway, TourGuideProperties properties) {
+		this.downstreamGateway = downstreamGateway;
+		this.refreshIntervalSeconds = properties.getAttractions().getRefreshIntervalSeconds();
+		this.firstLoadMaxRetryMillis = properties.getAttractions().getFirstLoadMaxRetryMillis();
+
+		long firstLoadRetryMillis = properties.getAttractions().getFirstLoadRetryMillis();
+		refreshExecutor.execute(() -> firstLoad(firstLoadRetryMillis));
+	}
+
+	private void firstLoad(long firstLoadRetryMillis) {
+		try {
+			refresh();
+		} finally {
+			firstLoadAttempted.countDown();
+		}
+		if(snapshot.get().isEmpty() && firstLoadRetryMillis > 0) {
+			retryFirstLoad(firstLoadRetryMillis);
+		} else {
+			scheduleRefresh();
+		}
+	}
+
+	private void retryFirstLoad(long delayMillis) {
+		refreshExecutor.schedule(() -> {
+			refresh();
+			if(snapshot.get().isEmpty()) {
+				retryFirstLoad(Math.min(delayMillis * 2, Math.max(delayMillis, firstLoadMaxRetryMillis)));
+			} else {
+				scheduleRefresh();
+			}
+		}, delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void scheduleRefresh() {
+		if(refreshIntervalSeconds > 0) {
+			refreshExecutor.scheduleWithFixedDelay(this::refresh, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Waits for the end of the first load, successful or not
+	 * @return false if it has not ended within the timeout
+	 */
+	public boolean awaitFirstLoadAttempt(long timeout, TimeUnit unit) throws InterruptedException {
+		return firstLoadAttempted.await(timeout, unit);
+	}
+
+	public AttractionSnapshot getSnapshot() {
+		return snapshot.get();
+	}
+
+	public List<Attraction> getAttractions() {
+		return snapshot.get().getAttractions();
+	}
+
+	/**
+	 * Downloads the attraction list and swaps the snapshot if its content has changed.
+	 * An empty or failed download keeps the current snapshot.
+	 * @return true if a new snapshot has been published
+	 */
+	public boolean refresh() {
+		try {
+			DownstreamResult<List<Attraction>> result = downstreamGateway.getAttractions();
+			if(!result.isSuccess()) {
+				logger.warn("Attraction catalog refresh failed (" + result.getFailure() + "), keeping version " + snapshot.get().getVersion());
+				return false;
+			}
+			List<Attraction> attractions = result.getValue();
+			if(attractions.isEmpty()) {
+				logger.warn("Attraction catalog refresh returned no attraction, keeping version " + snapshot.get().getVersion());
+				return false;
+			}
+			AttractionSnapshot current = snapshot.get();
+			if(!current.isEmpty() && current.hasSameAttractions(attractions)) {
+				logger.debug("Attraction catalog unchanged (version {})", current.getVersion());
+				return false;
+			}
+			AttractionSnapshot next = new AttractionSnapshot(attractions, current.getVersion() + 1);
+			snapshot.set(next);
+			logger.info("Attraction catalog loaded " + attractions.size() + " attractions (version " + next.getVersion() + ")");
+			return true;
+		} catch (RuntimeException e) {
+			logger.error("Attraction catalog refresh failed", e);
+			return false;
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		refreshExecutor.shutdownNow();
+		// The first load may never run now
+		firstLoadAttempted.countDown();
+	}
+}
@@ -0,0 +1,76 @@
+package tourGuide.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+
+import tourGuide.domain.location.Attraction;
+import tourGuide.geo.AttractionIndex;
+
+/**
+ * Immutable view of the attraction list at a given version, with its spatial index.
+ * A new instance is built on each content change and swapped in as a whole.
+ */
+public class AttractionSnapshot {
+
+	private final List<Attraction> attractions;
+	private final AttractionIndex index;
+	private final long version;
+	private final Date loadedAt;
+
+	AttractionSnapshot(List<Attraction> attractions, long version) {
+		this.attractions = Collections.unmodifiableList(new ArrayList<>(attractions));
+		this.index = new AttractionIndex(attractions);
+		this.version = version;
+		this.loadedAt = new Date();
+	}
+
+	static AttractionSnapshot empty() {
+		return new AttractionSnapshot(Collections.emptyList(), 0);
+	}
+
+	/**
+	 * Tells whether a freshly downloaded list has the same content as this snapshot, attraction by attraction:
+	 * the catalog is small enough to compare in full, where a hash could let a change go unnoticed
+	 */
+	boolean hasSameAttractions(List<Attraction> other) {
+		if(other.size() != attractions.size()) {
+			return false;
+		}
+		for(int i = 0; i < attractions.size(); i++) {
+			Attraction attraction = attractions.get(i);
+			Attraction otherAttraction = other.get(i);
+			if(!Objects.equals(attraction.attractionId, otherAttraction.attractionId)
+					|| !Objects.equals(attraction.attractionName, otherAttraction.attractionName)
+					|| !Objects.equals(attraction.city, otherAttraction.city)
+					|| !Objects.equals(attraction.state, otherAttraction.state)
+					|| Double.compare(attraction.latitude, otherAttraction.latitude) != 0
+					|| Double.compare(attraction.longitude, otherAttraction.longitude) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public List<Attraction> getAttractions() {
+		return attractions;
+	}
+
+	public AttractionIndex getIndex() {
+		return index;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public Date getLoadedAt() {
+		return loadedAt;
+	}
+
+	public boolean isEmpty() {
+		return attractions.isEmpty();
+	}
+}
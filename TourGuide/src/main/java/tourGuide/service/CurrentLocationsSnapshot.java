@@ -0,0 +1,69 @@
+package tourGuide.service;
+
+/**
+ * Immutable, pre-serialized JSON of all current locations at a given version, optionally also gzipped.
+ * Versions count from 1 in each running instance, so entity tags are made of the instance id and the version.
+ */
+public class CurrentLocationsSnapshot {
+	private final String instanceId;
+	private final long version;
+	private final long builtAt;
+	private final byte[] json;
+	private final byte[] gzippedJson;
+
+	public CurrentLocationsSnapshot(String instanceId, long version, long builtAt, byte[] json, byte[] gzippedJson) {
+		this.instanceId = instanceId;
+		this.version = version;
+		this.builtAt = builtAt;
+		this.json = json;
+		this.gzippedJson = gzippedJson;
+	}
+
+	public long getVersion() {
+		return version;
+	}
+
+	public long getBuiltAt() {
+		return builtAt;
+	}
+
+	/**
+	 * @return the JSON bytes, not to be modified
+	 */
+	public byte[] getJson() {
+		return json;
+	}
+
+	/**
+	 * @return the gzipped JSON bytes, not to be modified, null when gzip is disabled
+	 */
+	public byte[] getGzippedJson() {
+		return gzippedJson;
+	}
+
+	/**
+	 * @return the strong entity tag of the given representation
+	 */
+	public String getETag(boolean gzipped) {
+		return "\"" + instanceId + "-" + version + (gzipped ? "-gzip" : "") + "\"";
+	}
+
+	/**
+	 * @return true if an If-None-Match header value names this version, in either representation
+	 */
+	public boolean matches(String ifNoneMatch) {
+		if(ifNoneMatch == null) {
+			return false;
+		}
+		for(String tag : ifNoneMatch.split(",")) {
+			String trimmed = tag.trim();
+			if(trimmed.startsWith("W/")) {
+				trimmed = trimmed.substring(2);
+			}
+			if(trimmed.equals("*") || trimmed.equals(getETag(false)) || trimmed.equals(getETag(true))) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
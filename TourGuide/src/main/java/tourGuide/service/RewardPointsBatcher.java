@@ -0,0 +1,256 @@
+package tourGuide.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.user.RewardPointsRequest;
+import tourGuide.gateway.BatchEndpointUnavailableException;
+import tourGuide.gateway.DownstreamException;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+
+/**
+ * Collects reward points requests from every caller and sends them to the Rewards service in batches.
+ * A batch leaves as soon as it reaches batchMaxSize or when the first pending request has waited
+ * batchLingerMillis, and up to batchMaxInFlight batches are sent concurrently, the next ones waiting in line.
+ * Past batchMaxWaiting batches in line, new batches fail at once instead of piling up in memory.
+ * If the Rewards service has no batch endpoint, requests go through the per-pair endpoint. A batch failing for
+ * any other reason fails its requests: the circuit breaker decides when to try again, not a request per pair.
+ * Every request is sent asynchronously: no caller nor batcher thread waits for the answers.
+ */
+@Component
+public class RewardPointsBatcher {
+	private Logger logger = LoggerFactory.getLogger(RewardPointsBatcher.class);
+
+	private final DownstreamGateway downstreamGateway;
+	private final int maxBatchSize;
+	private final long lingerMillis;
+	private final int maxInFlight;
+	private final int maxWaiting;
+	private volatile boolean batchSupported;
+
+	private final Object lock = new Object();
+	private List<PendingRequest> pending = new ArrayList<>();
+	private boolean flushScheduled = false;
+	// Batches sent and not answered yet, and batches waiting for one of them to be answered (guarded by lock)
+	private int batchesInFlight = 0;
+	private final Deque<List<PendingRequest>> waitingBatches = new ArrayDeque<>();
+
+	private final ScheduledExecutorService lingerScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("reward-points-linger"));
+
+	public RewardPointsBatcher(DownstreamGateway downstreamGateway) {
+		this(downstreamGateway, new TourGuideProperties());
+	}
+
+	@Autowired
+	public RewardPointsBatcher(DownstreamGateway downstreamGateway, TourGuideProperties properties) {
+		TourGuideProperties.Rewards rewards = properties.getRewards();
+		this.downstreamGateway = downstreamGateway;
+		this.batchSupported = rewards.isBatchEnabled();
+		this.maxBatchSize = Math.max(1, rewards.getBatchMaxSize());
+		this.lingerMillis = Math.max(0, rewards.getBatchLingerMillis());
+		this.maxInFlight = Math.max(1, rewards.getBatchMaxInFlight());
+		this.maxWaiting = Math.max(0, rewards.getBatchMaxWaiting());
+	}
+
+	public boolean isBatchSupported() {
+		return batchSupported;
+	}
+
+	/**
+	 * @return the reward points of the pair, completed once its batch has been answered
+	 */
+	public CompletableFuture<Integer> submit(UUID attractionId, UUID userId) {
+		RewardPointsRequest request = new RewardPointsRequest(attractionId, userId);
+		if(!batchSupported) {
+			CompletableFuture<Integer> result = new CompletableFuture<>();
+			downstreamGateway.getRewardPointsAsync(attractionId, userId).thenAccept(rewardPoints -> complete(result, rewardPoints));
+			return result;
+		}
+
+		PendingRequest pendingRequest = new PendingRequest(request);
+		List<PendingRequest> fullBatch = null;
+		boolean scheduleFlush = false;
+		synchronized(lock) {
+			pending.add(pendingRequest);
+			if(pending.size() >= maxBatchSize || lingerMillis == 0) {
+				fullBatch = takePending();
+			} else if(!flushScheduled) {
+				flushScheduled = true;
+				scheduleFlush = true;
+			}
+		}
+		if(fullBatch != null) {
+			dispatch(fullBatch);
+		} else if(scheduleFlush) {
+			lingerScheduler.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+		}
+		return pendingRequest.result;
+	}
+
+	/**
+	 * Sends whatever is pending without waiting for the linger time
+	 */
+	public void flush() {
+		List<PendingRequest> batch;
+		synchronized(lock) {
+			batch = takePending();
+		}
+		if(!batch.isEmpty()) {
+			dispatch(batch);
+		}
+	}
+
+	private List<PendingRequest> takePending() {
+		List<PendingRequest> batch = pending;
+		pending = new ArrayList<>();
+		flushScheduled = false;
+		return batch;
+	}
+
+	private void dispatch(List<PendingRequest> batch) {
+		boolean full = false;
+		synchronized(lock) {
+			if(batchesInFlight < maxInFlight) {
+				batchesInFlight++;
+			} else if(waitingBatches.size() < maxWaiting) {
+				waitingBatches.add(batch);
+				return;
+			} else {
+				full = true;
+			}
+		}
+		if(full) {
+			fail(batch, DownstreamResult.failure(DownstreamResult.Failure.BULKHEAD_FULL,
+					"Rewards service already has " + maxInFlight + " batches in flight and " + maxWaiting + " waiting, batch not sent"));
+			return;
+		}
+		send(batch);
+	}
+
+	/**
+	 * @return the waiting batch to send in place of the one just answered, null if none is waiting
+	 */
+	private List<PendingRequest> nextBatch() {
+		synchronized(lock) {
+			List<PendingRequest> next = waitingBatches.poll();
+			if(next == null) {
+				batchesInFlight--;
+			}
+			return next;
+		}
+	}
+
+	/**
+	 * Sends the batch, then the waiting ones as the answers come. An answer already there when the call returns
+	 * (circuit open, bulkhead full) lets the loop go on with the next batch, instead of a callback nesting one
+	 * more send per waiting batch on the same stack.
+	 */
+	private void send(List<PendingRequest> batch) {
+		while(batch != null) {
+			// Without batch endpoint the waiting batches go pair by pair, without waiting for the answers
+			if(!batchSupported) {
+				sendPerPair(batch);
+				batch = nextBatch();
+				continue;
+			}
+			List<PendingRequest> sent = batch;
+			List<RewardPointsRequest> requests = new ArrayList<>(sent.size());
+			sent.forEach(pendingRequest -> requests.add(pendingRequest.request));
+			CompletableFuture<Void> answered = downstreamGateway.getRewardPointsBatchAsync(requests)
+					.handle((rewardPoints, e) -> {
+						answered(sent, rewardPoints, e);
+						return null;
+					});
+			if(!answered.isDone()) {
+				answered.thenRun(() -> send(nextBatch()));
+				return;
+			}
+			batch = nextBatch();
+		}
+	}
+
+	private void answered(List<PendingRequest> sent, int[] rewardPoints, Throwable e) {
+		if(e == null) {
+			for(int i = 0; i < rewardPoints.length; i++) {
+				sent.get(i).result.complete(rewardPoints[i]);
+			}
+			return;
+		}
+		Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+		if(cause instanceof BatchEndpointUnavailableException) {
+			logger.info("Rewards service has no batch endpoint, falling back to per-pair requests");
+			batchSupported = false;
+			sendPerPair(sent);
+			return;
+		}
+		// A request per pair would multiply the load of a service that is already failing
+		logger.warn("Reward points batch of " + sent.size() + " failed: " + cause.getMessage());
+		fail(sent, DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, "Reward points batch of " + sent.size() + " failed", cause));
+	}
+
+	private static void fail(List<PendingRequest> batch, DownstreamResult<Integer> failure) {
+		for(PendingRequest pendingRequest : batch) {
+			complete(pendingRequest.result, failure);
+		}
+	}
+
+	private void sendPerPair(List<PendingRequest> batch) {
+		for(PendingRequest pendingRequest : batch) {
+			downstreamGateway.getRewardPointsAsync(pendingRequest.request.attractionId, pendingRequest.request.userId)
+					.thenAccept(rewardPoints -> complete(pendingRequest.result, rewardPoints));
+		}
+	}
+
+	/**
+	 * A failed call completes the future exceptionally, so that no cache keeps it
+	 */
+	private static void complete(CompletableFuture<Integer> future, DownstreamResult<Integer> result) {
+		if(result.isSuccess()) {
+			future.complete(result.getValue());
+		} else {
+			future.completeExceptionally(new DownstreamException(result));
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		lingerScheduler.shutdownNow();
+	}
+
+	private static ThreadFactory daemonThreadFactory(String prefix) {
+		AtomicInteger counter = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static class PendingRequest {
+		private final RewardPointsRequest request;
+		private final CompletableFuture<Integer> result = new CompletableFuture<>();
+
+		private PendingRequest(RewardPointsRequest request) {
+			this.request = request;
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package tourGuide.service;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.user.RewardPointsRequest;
+
+/**
+ * Reward points per (attraction, user), bounded by size (W-TinyLFU eviction) and by age.
+ * Concurrent misses on the same pair share one pending downstream request.
+ * Hit, miss and eviction statistics are published as the "rewardPoints" cache metrics.
+ */
+@Component
+public class RewardPointsCache implements MeterBinder {
+
+	public static final String CACHE_NAME = "rewardPoints";
+
+	private final AsyncLoadingCache<RewardPointsRequest, Integer> cache;
+
+	public RewardPointsCache(RewardPointsBatcher rewardPointsBatcher) {
+		this(rewardPointsBatcher, new TourGuideProperties());
+	}
+
+	@Autowired
+	public RewardPointsCache(RewardPointsBatcher rewardPointsBatcher, TourGuideProperties properties) {
+		TourGuideProperties.Rewards rewards = properties.getRewards();
+		this.cache = Caffeine.newBuilder()
+				.maximumSize(rewards.getCacheMaxSize())
+				.expireAfterWrite(rewards.getCacheTtlMinutes(), TimeUnit.MINUTES)
+				.recordStats()
+				.buildAsync((request, executor) -> rewardPointsBatcher.submit(request.attractionId, request.userId));
+	}
+
+	public CompletableFuture<Integer> get(UUID attractionId, UUID userId) {
+		return cache.get(new RewardPointsRequest(attractionId, userId));
+	}
+
+	public CacheStats stats() {
+		return cache.synchronous().stats();
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, cache.synchronous(), CACHE_NAME);
+	}
+}
@@ -1,36 +1,75 @@
 package tourGuide.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import tourGuide.domain.location.Attraction;
 import tourGuide.domain.location.Location;
 import tourGuide.domain.location.VisitedLocation;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.geo.AttractionIndex;
+import tourGuide.geo.DistanceKernel;
 import tourGuide.domain.user.User;
 import tourGuide.domain.user.UserReward;
 
-import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class RewardsService {
 	private Logger logger = LoggerFactory.getLogger(RewardsService.class);
 
-	private static final double STATUTE_MILES_PER_NAUTICAL_MILE = 1.15077945;
-
 	// proximity in miles
     private int defaultProximityBuffer = 10;
 	private int proximityBuffer = defaultProximityBuffer;
 	private int attractionProximityRange = 200;
 
+	private final DownstreamGateway downstreamGateway;
+	private final AttractionCatalog attractionCatalog;
+	private final RewardPointsCache rewardPointsCache;
+
 	public RewardsService() {
+		this(new TourGuideProperties());
+	}
+
+	public RewardsService(TourGuideProperties properties) {
+		this(new DownstreamGateway(properties), properties);
+	}
+
+	private RewardsService(DownstreamGateway downstreamGateway, TourGuideProperties properties) {
+		this(downstreamGateway, new AttractionCatalog(downstreamGateway, properties), new RewardPointsCache(new RewardPointsBatcher(downstreamGateway, properties), properties));
+		// Built outside Spring, the service is handed over with its catalog loaded if the GPS service answered
+		try {
+			attractionCatalog.awaitFirstLoadAttempt(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Autowired
+	public RewardsService(DownstreamGateway downstreamGateway, AttractionCatalog attractionCatalog, RewardPointsCache rewardPointsCache) {
+		this.downstreamGateway = downstreamGateway;
+		this.attractionCatalog = attractionCatalog;
+		this.rewardPointsCache = rewardPointsCache;
+	}
+
+	DownstreamGateway getDownstreamGateway() {
+		return downstreamGateway;
+	}
+
+	AttractionCatalog getAttractionCatalog() {
+		return attractionCatalog;
+	}
+
+	public RewardPointsCache getRewardPointsCache() {
+		return rewardPointsCache;
 	}
 
 	public void setProximityBuffer(int proximityBuffer) {
@@ -44,65 +83,66 @@ public class RewardsService {
 	public void calculateRewards(User user) {
 		logger.debug("Calculate Rewards - Thread : " + Thread.currentThread().getName() + " - User : " + user.getUserName());
 
-		List<VisitedLocation> userLocations = user.getVisitedLocations();
-
-		List<Attraction> attractions = new ArrayList<>();
-
-		//List<Attraction> attractions = gpsService.getAttractions();
+		calculateRewardsAsync(user).join();
+	}
 
-		logger.debug("Request getAttractions build");
-		HttpClient client = HttpClient.newHttpClient();
-		String requestURI = "http://localhost:8081/getAttractions";
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(URI.create(requestURI))
-				.GET()
-				.build();
-		try {
-			HttpResponse <String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-			logger.debug("Status code = " + response.statusCode());
-			logger.debug("Response Body = " + response.body());
-			ObjectMapper mapper = new ObjectMapper();
-			attractions = mapper.readValue(response.body(), new TypeReference<List<Attraction>>(){ });
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	/**
+	 * Finds the new rewards of the user right away, then completes once their reward points have been received
+	 */
+	public CompletableFuture<Void> calculateRewardsAsync(User user) {
+		// Only the locations visited since the previous evaluation can earn new rewards.
+		// The sequence is read first: a location added meanwhile is evaluated again next time rather than skipped.
+		long sequence = user.getVisitedLocationSequence();
+		List<VisitedLocation> newLocations = user.getVisitedLocationsSinceRewardsWatermark();
+		if(newLocations.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
 		}
 
-		for(VisitedLocation visitedLocation : userLocations) {
-			for(Attraction attraction : attractions) {
-				if(user.getUserRewards().stream().filter(r -> r.attraction.attractionName.equals(attraction.attractionName)).count() == 0) {
-					if(nearAttraction(visitedLocation, attraction)) {
-						user.addUserReward(new UserReward(visitedLocation, attraction, getRewardPoints(attraction, user)));
-					}
+		AttractionSnapshot attractionSnapshot = attractionCatalog.getSnapshot();
+		// Not loaded yet: the locations stay pending until there are attractions to evaluate them against
+		if(attractionSnapshot.isEmpty()) {
+			return CompletableFuture.completedFuture(null);
+		}
+		// Nothing left to earn once every attraction of the catalog has been rewarded
+		if(user.getRewardedAttractionCount() >= attractionSnapshot.getAttractions().size()
+				&& attractionSnapshot.getAttractions().stream().allMatch(user::hasRewardFor)) {
+			user.advanceRewardsWatermark(sequence);
+			return CompletableFuture.completedFuture(null);
+		}
+		AttractionIndex attractionIndex = attractionSnapshot.getIndex();
+
+		Map<UUID, UserReward> newRewards = new LinkedHashMap<>();
+		int[] positions = new int[attractionIndex.size()];
+		for(VisitedLocation visitedLocation : newLocations) {
+			int count = attractionIndex.withinRadius(visitedLocation.location, proximityBuffer, positions);
+			for(int i = 0; i < count; i++) {
+				Attraction attraction = attractionIndex.attraction(positions[i]);
+				if(!user.hasRewardFor(attraction) && !newRewards.containsKey(attraction.attractionId)) {
+					newRewards.put(attraction.attractionId, new UserReward(visitedLocation, attraction));
 				}
 			}
 		}
+
+		// Reward points of every new reward are requested together so that they share a batch
+		List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>(newRewards.size());
+		newRewards.values().forEach(userReward -> rewardPoints.add(rewardPointsCache.get(userReward.attraction.attractionId, user.getUserId())));
+		return CompletableFuture.allOf(rewardPoints.toArray(new CompletableFuture<?>[0]))
+				.thenRun(() -> {
+					int i = 0;
+					for(UserReward userReward : newRewards.values()) {
+						userReward.setRewardPoints(rewardPoints.get(i++).join());
+						user.addUserReward(userReward);
+					}
+					user.advanceRewardsWatermark(sequence);
+				});
 	}
 
 	public int getRewardPoints(Attraction attraction, User user) {
-		int rewardsPoint=0;
-
-		logger.debug("Request getRewardPoints build");
-		HttpClient client = HttpClient.newHttpClient();
-		String requestURI = "http://localhost:8082/getRewardPoints?attractionId=" + attraction.attractionId + "&userId=" + user.getUserId();
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(URI.create(requestURI))
-				.GET()
-				.build();
-		try {
-			HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-			logger.debug("Status code = " + response.statusCode());
-			logger.debug("Response Body = " + response.body());
-			rewardsPoint=Integer.parseInt(response.body());
-		} catch (IOException | NumberFormatException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
-		logger.debug("Response RewardsPoint = " + rewardsPoint);
-		return rewardsPoint;
-		//return rewardsCentral.getAttractionRewardPoints(attraction.attractionId, user.getUserId());
+		return getRewardPointsAsync(attraction, user).join();
+	}
+
+	public CompletableFuture<Integer> getRewardPointsAsync(Attraction attraction, User user) {
+		return rewardPointsCache.get(attraction.attractionId, user.getUserId());
 	}
 
 	public boolean isWithinAttractionProximity(Attraction attraction, Location location) {
@@ -114,16 +154,6 @@ public class RewardsService {
 	}
 
 	public double getDistance(Location loc1, Location loc2) {
-        double lat1 = Math.toRadians(loc1.latitude);
-        double lon1 = Math.toRadians(loc1.longitude);
-        double lat2 = Math.toRadians(loc2.latitude);
-        double lon2 = Math.toRadians(loc2.longitude);
-
-        double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2)
-                               + Math.cos(lat1) * Math.cos(lat2) * Math.cos(lon1 - lon2));
-
-        double nauticalMiles = 60 * Math.toDegrees(angle);
-        double statuteMiles = STATUTE_MILES_PER_NAUTICAL_MILE * nauticalMiles;
-        return statuteMiles;
+		return DistanceKernel.distance(loc1, loc2);
 	}
 }
@@ -1,20 +1,29 @@
 package tourGuide.service;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 import java.util.stream.Collectors;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import com.jsoniter.output.JsonStream;
+
 import tourGuide.configuration.TourGuideInitialization;
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.gateway.DownstreamException;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.geo.AttractionIndex;
 import tourGuide.domain.location.NearbyAttraction;
 import tourGuide.domain.location.Attraction;
 import tourGuide.domain.location.Location;
@@ -24,43 +33,138 @@ import tourGuide.domain.user.User;
 import tourGuide.domain.user.UserPreferences;
 import tourGuide.domain.user.UserReward;
 import tourGuide.domain.tripdeal.Provider;
+import tourGuide.store.CurrentLocationStore;
+import tourGuide.store.UserJournal;
+import tourGuide.store.UserSnapshot;
+import tourGuide.store.UserRegistry;
 
 @Service
 public class TourGuideService {
 	private Logger logger = LoggerFactory.getLogger(TourGuideService.class);
 
 	private final RewardsService rewardsService;
+	private final DownstreamGateway downstreamGateway;
+	private final AttractionCatalog attractionCatalog;
+	private final CurrentLocationStore currentLocationStore;
+	private final UserJournal userJournal;
+	private final UserSnapshot userSnapshot;
+	private final boolean snapshotGzip;
+	private final long snapshotMinRebuildIntervalMillis;
+	private final AtomicLong snapshotVersion = new AtomicLong();
+	// Versions restart at 1 with each instance: the entity tags also carry this random id so that a tag from before a restart never matches
+	private final String snapshotInstanceId = Long.toString(new Random().nextLong() & Long.MAX_VALUE, 36);
+	private volatile CurrentLocationsSnapshot currentLocationsSnapshot;
 	public final Tracker tracker;
 	boolean testMode = true;
 
+	public static final int DEFAULT_NEARBY_ATTRACTIONS = 5;
+	private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+	private static final int UUID_LENGTH = 36;
+	private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
 	// Mieux si passé en paramètre du constructeur ?
 	//@Autowired
-	private TourGuideInitialization init = new TourGuideInitialization();
+	private final TourGuideInitialization init;
 
 	public TourGuideService(RewardsService rewardsService) {
+		this(rewardsService, new TourGuideProperties());
+	}
+
+	public TourGuideService(RewardsService rewardsService, TourGuideProperties properties) {
+		this(rewardsService, properties, new UserSnapshot(properties));
+	}
+
+	private TourGuideService(RewardsService rewardsService, TourGuideProperties properties, UserSnapshot userSnapshot) {
+		this(rewardsService, rewardsService.getDownstreamGateway(), rewardsService.getAttractionCatalog(), new CurrentLocationStore(properties),
+				new UserJournal(properties, userSnapshot), userSnapshot, properties, rewardsService.getDownstreamGateway().getMeterRegistry());
+	}
+
+	@Autowired
+	public TourGuideService(RewardsService rewardsService, DownstreamGateway downstreamGateway, AttractionCatalog attractionCatalog,
+			CurrentLocationStore currentLocationStore, UserJournal userJournal, UserSnapshot userSnapshot, TourGuideProperties properties,
+			MeterRegistry meterRegistry) {
 		this.rewardsService = rewardsService;
+		this.downstreamGateway = downstreamGateway;
+		this.attractionCatalog = attractionCatalog;
+		this.currentLocationStore = currentLocationStore;
+		this.userJournal = userJournal;
+		this.userSnapshot = userSnapshot;
+		this.init = new TourGuideInitialization(properties);
+		this.snapshotGzip = properties.getLocationStore().isSnapshotGzip();
+		this.snapshotMinRebuildIntervalMillis = properties.getLocationStore().getSnapshotMinRebuildIntervalMillis();
 
-		if(testMode) {
+		if(userJournal.isEnabled()) {
+			userJournal.open(init.getInternalUserRegistry());
+		} else if(userSnapshot.isLoadOnStartup()) {
+			loadUserSnapshot();
+		}
+		if(testMode && init.getInternalUserRegistry().size() == 0) {
 			logger.info("TestMode enabled");
 			logger.debug("Initializing users");
 			init.initializeInternalUsers();
 			logger.debug("Finished initializing users");
 		}
-		tracker = new Tracker(this, rewardsService);
+		init.getInternalUserRegistry().forEach(this::attach);
+		tracker = new Tracker(this, rewardsService, properties, meterRegistry);
 		addShutDownHook();
 	}
 
 	public User getUser(String userName) {
-		return init.getInternalUserMap().get(userName);
+		return init.getInternalUserRegistry().getByName(userName);
+	}
+
+	public User getUser(UUID userId) {
+		return init.getInternalUserRegistry().getById(userId);
 	}
 
+	/**
+	 * @return a copy of the users, prefer getUserRegistry() to iterate without copying
+	 */
 	public List<User> getAllUsers() {
-		return  init.getInternalUserMap().values().stream().collect(Collectors.toList());
+		return init.getInternalUserRegistry().stream().collect(Collectors.toList());
+	}
+
+	public UserRegistry getUserRegistry() {
+		return init.getInternalUserRegistry();
+	}
+
+	/**
+	 * @return the users shard by shard, as live views
+	 */
+	public List<Collection<User>> getUserPartitions() {
+		return init.getInternalUserRegistry().partitions();
 	}
 
 	public void addUser(User user) {
-		if(!init.getInternalUserMap().containsKey(user.getUserName())) {
-			init.getInternalUserMap().put(user.getUserName(), user);
+		if(init.getInternalUserRegistry().addIfAbsent(user)) {
+			attach(user);
+		}
+	}
+
+	private void attach(User user) {
+		user.attachCurrentLocationStore(currentLocationStore);
+		if(userJournal.isOpen()) {
+			userJournal.register(user);
+		}
+	}
+
+	public UserJournal getUserJournal() {
+		return userJournal;
+	}
+
+	/**
+	 * Writes every user to the snapshot file
+	 * @return the number of users written
+	 */
+	public long saveUserSnapshot() throws IOException {
+		return userSnapshot.save(init.getInternalUserRegistry());
+	}
+
+	private void loadUserSnapshot() {
+		try {
+			userSnapshot.loadIfPresent(init.getInternalUserRegistry());
+		} catch (IOException | RuntimeException e) {
+			logger.error("User snapshot " + userSnapshot.getPath() + " could not be loaded", e);
 		}
 	}
 
@@ -69,109 +173,186 @@ public class TourGuideService {
 	}
 
 	public VisitedLocation getUserLocation(User user) {
-		VisitedLocation visitedLocation = (user.getVisitedLocations().size() > 0) ?
-			user.getLastVisitedLocation() :
-			trackUserLocation(user);
-		return visitedLocation;
+		VisitedLocation visitedLocation = user.getLastVisitedLocation();
+		return visitedLocation != null ? visitedLocation : trackUserLocation(user);
 	}
 
 	public HashMap<String, Location> getAllCurrentLocations() {
 		HashMap<String, Location> allCurrentLocations = new HashMap<>();
-		List<User> allUsers = getAllUsers();
-		allUsers.forEach(user -> allCurrentLocations.put(user.getUserId().toString(), user.getLastVisitedLocation().location));
+		init.getInternalUserRegistry().forEach(user -> {
+			// A user registered but not tracked yet has no location to report
+			VisitedLocation lastVisitedLocation = user.getLastVisitedLocation();
+			if(lastVisitedLocation != null) {
+				allCurrentLocations.put(user.getUserId().toString(), lastVisitedLocation.location);
+			}
+		});
 		return allCurrentLocations;
 	}
-	// Appel preferencesService.getPrice
-	public List<Provider> getTripDeals(User user) {
-		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
 
-		List<Provider> providers = new ArrayList<>();
-
-		//List<Provider> providers = preferencesService.getPrice(init.getTripPricerApiKey(), user.getUserId(), user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(), user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
+	/**
+	 * Writes the latest location of every user as a JSON object keyed by user id, the format of
+	 * getAllCurrentLocations, straight from the location store: nothing is allocated per user.
+	 */
+	public void writeAllCurrentLocations(OutputStream outputStream) throws IOException {
+		writeCurrentLocations(outputStream, 0, currentLocationStore.size());
+	}
 
-		logger.debug("Request getTripDeals build");
-		HttpClient client = HttpClient.newHttpClient();
-		String requestURI = "http://localhost:8083/getPrice?apiKey=" + init.getTripPricerApiKey() + "&attractionId=" + user.getUserId() + "&adults=" + user.getUserPreferences().getNumberOfAdults() + "&children=" + user.getUserPreferences().getNumberOfChildren() + "&nightsStay=" + user.getUserPreferences().getTripDuration() + "&rewardsPoints=" + cumulatativeRewardPoints;
+	/**
+	 * @return the number of location slots, one per user, that pages are cut from
+	 */
+	public int getCurrentLocationSlotCount() {
+		return currentLocationStore.size();
+	}
 
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(URI.create(requestURI))
-				.GET()
-				.build();
+	/**
+	 * Same as writeAllCurrentLocations for the users of the slots [fromSlot, toSlot), streamed through
+	 * a small buffer: memory use does not depend on the number of users.
+	 */
+	public void writeCurrentLocations(OutputStream outputStream, int fromSlot, int toSlot) throws IOException {
+		JsonStream stream = new JsonStream(outputStream, STREAM_BUFFER_SIZE);
+		byte[] userId = new byte[UUID_LENGTH];
+		boolean[] first = { true };
+		stream.writeObjectStart();
 		try {
-			HttpResponse <String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-			logger.debug("Status code = " + response.statusCode());
-			logger.debug("Response Body = " + response.body());
-			ObjectMapper mapper = new ObjectMapper();
-			providers = mapper.readValue(response.body(), new TypeReference<List<Provider>>(){ });
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			currentLocationStore.forEach(fromSlot, Math.max(0, toSlot - fromSlot), (slot, mostSignificantBits, leastSignificantBits, latitude, longitude, timeVisited) -> {
+				try {
+					if(!first[0]) {
+						stream.write(',');
+					}
+					first[0] = false;
+					writeUuid(mostSignificantBits, leastSignificantBits, userId);
+					stream.write('"');
+					stream.write(userId, 0, UUID_LENGTH);
+					stream.write((byte) '"', (byte) ':');
+					stream.writeObjectStart();
+					stream.writeObjectField("longitude");
+					stream.writeVal(longitude);
+					stream.writeMore();
+					stream.writeObjectField("latitude");
+					stream.writeVal(latitude);
+					stream.writeObjectEnd();
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
 		}
+		stream.writeObjectEnd();
+		stream.flush();
+	}
+
+	/**
+	 * @return the pre-serialized locations of every user, rebuilt first if locations changed and the snapshot
+	 * is older than the minimum rebuild interval
+	 */
+	public CurrentLocationsSnapshot getCurrentLocationsSnapshot() throws IOException {
+		CurrentLocationsSnapshot snapshot = currentLocationsSnapshot;
+		if(snapshot == null || (currentLocationStore.isDirty()
+				&& System.currentTimeMillis() - snapshot.getBuiltAt() >= snapshotMinRebuildIntervalMillis)) {
+			snapshot = refreshCurrentLocationsSnapshot();
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Rebuilds the snapshot if locations changed since the last build, called by the tracker after each cycle
+	 */
+	public synchronized CurrentLocationsSnapshot refreshCurrentLocationsSnapshot() throws IOException {
+		CurrentLocationsSnapshot snapshot = currentLocationsSnapshot;
+		if(snapshot != null && !currentLocationStore.isDirty()) {
+			return snapshot;
+		}
+		currentLocationStore.clearDirty();
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		writeAllCurrentLocations(json);
+		byte[] gzippedJson = null;
+		if(snapshotGzip) {
+			ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+			try(GZIPOutputStream gzipStream = new GZIPOutputStream(gzipped)) {
+				json.writeTo(gzipStream);
+			}
+			gzippedJson = gzipped.toByteArray();
+		}
+		snapshot = new CurrentLocationsSnapshot(snapshotInstanceId, snapshotVersion.incrementAndGet(), System.currentTimeMillis(), json.toByteArray(), gzippedJson);
+		currentLocationsSnapshot = snapshot;
+		return snapshot;
+	}
+
+	// Same text as UUID.toString, into a reused buffer
+	private static void writeUuid(long mostSignificantBits, long leastSignificantBits, byte[] buffer) {
+		int position = 0;
+		for(int i = 0; i < 32; i++) {
+			if(i == 8 || i == 12 || i == 16 || i == 20) {
+				buffer[position++] = '-';
+			}
+			long bits = i < 16 ? mostSignificantBits : leastSignificantBits;
+			int shift = (15 - (i % 16)) * 4;
+			buffer[position++] = HEX_DIGITS[(int) (bits >>> shift) & 0xf];
+		}
+	}
+	/**
+	 * @throws DownstreamException if TripPricer did not answer, the current trip deals are then kept
+	 */
+	// Appel preferencesService.getPrice
+	public List<Provider> getTripDeals(User user) {
+		int cumulatativeRewardPoints = user.getUserRewards().stream().mapToInt(i -> i.getRewardPoints()).sum();
+
+		//List<Provider> providers = preferencesService.getPrice(init.getTripPricerApiKey(), user.getUserId(), user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(), user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints);
+		List<Provider> providers = downstreamGateway.getPrice(TourGuideInitialization.getTripPricerApiKey(), user.getUserId(), user.getUserPreferences().getNumberOfAdults(), user.getUserPreferences().getNumberOfChildren(), user.getUserPreferences().getTripDuration(), cumulatativeRewardPoints).getValue();
 
 		user.setTripDeals(providers);
 		return providers;
 	}
+	/**
+	 * @throws DownstreamException if GPS did not answer, nothing is then added to the user's locations
+	 */
 	// Appel gpsService.getUserLocation
 	public VisitedLocation trackUserLocation(User user) {
 		logger.debug("Track Location - Thread : " + Thread.currentThread().getName() + " - User : " + user.getUserName());
 
-		VisitedLocation visitedLocation = new VisitedLocation();
-
-		logger.debug("Request getUserLocation build");
-		HttpClient client = HttpClient.newHttpClient();
-		String requestURI = "http://localhost:8081/getUserLocation?userId=" + user.getUserId();
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(URI.create(requestURI))
-				//.header("userId", user.getUserId().toString())
-				.GET()
-				.build();
-		try {
-			HttpResponse <String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-			logger.debug("Status code = " + response.statusCode());
-			logger.debug("Response Body = " + response.body());
-			ObjectMapper mapper = new ObjectMapper();
-			visitedLocation = mapper.readValue(response.body(), VisitedLocation.class);
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
-		}
 		//VisitedLocation visitedLocation = gpsService.getUserLocation(user.getUserId());
+		VisitedLocation visitedLocation = downstreamGateway.getUserLocation(user.getUserId()).getValue();
 		user.addToVisitedLocations(visitedLocation);
 
 		return visitedLocation;
 	}
-	// Appel gpsService.getAttractions & rewardsService.getDistance & rewardsService.getRewardPoints
+
+	/**
+	 * @return a future completed with a DownstreamException if GPS did not answer
+	 */
+	public CompletableFuture<VisitedLocation> trackUserLocationAsync(User user) {
+		logger.debug("Track Location Async - User : {}", user.getUserName());
+
+		return downstreamGateway.getUserLocationAsync(user.getUserId())
+				.thenApply(result -> {
+					VisitedLocation visitedLocation = result.getValue();
+					user.addToVisitedLocations(visitedLocation);
+					return visitedLocation;
+				});
+	}
 	public List<NearbyAttraction> getNearByAttractions(VisitedLocation visitedLocation, User user) {
-		List<NearbyAttraction> nearbyAttractions = new ArrayList<>();
-		List<Attraction> allAttractions = new ArrayList<>();
-
-		logger.debug("Request getNearByAttractions build");
-		HttpClient client = HttpClient.newHttpClient();
-		String requestURI = "http://localhost:8081/getAttractions";
-		HttpRequest request = HttpRequest.newBuilder()
-				.uri(URI.create(requestURI))
-				.GET()
-				.build();
-		try {
-			HttpResponse <String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
-			logger.debug("Status code = " + response.statusCode());
-			logger.debug("Response Body = " + response.body());
-			ObjectMapper mapper = new ObjectMapper();
-			allAttractions = mapper.readValue(response.body(), new TypeReference<List<Attraction>>(){ });
-		} catch (IOException e) {
-			e.printStackTrace();
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+		return getNearByAttractions(visitedLocation, user, DEFAULT_NEARBY_ATTRACTIONS);
+	}
+	// Appel attractionIndex.nearest & rewardsService.getRewardPoints
+	public List<NearbyAttraction> getNearByAttractions(VisitedLocation visitedLocation, User user, int numberOfAttractions) {
+		AttractionIndex attractionIndex = attractionCatalog.getSnapshot().getIndex();
+
+		// Rank on distance alone, then resolve reward points for the selected attractions only, all at once
+		int capacity = Math.max(0, Math.min(numberOfAttractions, attractionIndex.size()));
+		int[] positions = new int[capacity];
+		double[] distances = new double[capacity];
+		int count = attractionIndex.nearest(visitedLocation.location, capacity, positions, distances);
+		List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			rewardPoints.add(rewardsService.getRewardPointsAsync(attractionIndex.attraction(positions[i]), user));
 		}
 
-		//List<Attraction> allAttractions = gpsService.getAttractions();
-		TreeMap<Double, NearbyAttraction> treeAttractionDistance = new TreeMap<>();
-		allAttractions.forEach(attraction -> treeAttractionDistance.put(rewardsService.getDistance(attraction, visitedLocation.location), new NearbyAttraction(attraction.attractionName, new Location(attraction.latitude, attraction.longitude), visitedLocation.location, rewardsService.getDistance(attraction, visitedLocation.location), rewardsService.getRewardPoints(attraction, user))));
-		nearbyAttractions = treeAttractionDistance.values().stream()
-															.limit(5)
-															.collect(Collectors.toList());
+		List<NearbyAttraction> nearbyAttractions = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			Attraction attraction = attractionIndex.attraction(positions[i]);
+			nearbyAttractions.add(new NearbyAttraction(attraction.attractionName, new Location(attraction.latitude, attraction.longitude), visitedLocation.location, distances[i], rewardPoints.get(i).join()));
+		}
 
 		return nearbyAttractions;
 	}
@@ -189,7 +370,15 @@ public class TourGuideService {
 	private void addShutDownHook() {
 		Runtime.getRuntime().addShutdownHook(new Thread() { 
 		      public void run() {
-		        tracker.stopTracking();
+		        tracker.shutdown();
+		        if(userSnapshot.isSaveOnShutdown()) {
+		          try {
+		            saveUserSnapshot();
+		          } catch (IOException | RuntimeException e) {
+		            logger.error("User snapshot could not be saved on shutdown", e);
+		          }
+		        }
+		        userJournal.close();
 		      } 
 		    }); 
 	}
@@ -0,0 +1,184 @@
+package tourGuide.store;
+
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tourGuide.configuration.TourGuideProperties;
+
+/**
+ * Latest location of every user, kept in primitive columns (user id, latitude, longitude, time)
+ * on the heap or in direct buffers.
+ * Each user gets a stable int slot when registered. Columns are allocated by fixed-size segments
+ * that never move, so that writers and readers never wait for the store to grow.
+ * A writer per slot at a time (User serializes its own updates) publishes a row through a per-slot
+ * sequence counter: readers retry a row that was being written, and never see it half updated.
+ */
+@Component
+public class CurrentLocationStore {
+
+	private static final long NO_LOCATION = Long.MIN_VALUE;
+
+	private final int segmentSize;
+	private final boolean offHeap;
+	private volatile Segment[] segments = new Segment[0];
+	private volatile int size = 0;
+	// Set by every change, cleared by readers that want to know whether something changed since their last look
+	private volatile boolean dirty = true;
+
+	public CurrentLocationStore() {
+		this(new TourGuideProperties());
+	}
+
+	@Autowired
+	public CurrentLocationStore(TourGuideProperties properties) {
+		TourGuideProperties.LocationStore locationStore = properties.getLocationStore();
+		this.segmentSize = Math.max(1, locationStore.getSegmentSize());
+		this.offHeap = locationStore.isOffHeap();
+	}
+
+	/**
+	 * Assigns the next slot to a user, without location until the first update
+	 * @return the slot of the user
+	 */
+	public synchronized int register(UUID userId) {
+		int slot = size;
+		int segmentIndex = slot / segmentSize;
+		if(segmentIndex == segments.length) {
+			Segment[] grown = Arrays.copyOf(segments, segmentIndex + 1);
+			grown[segmentIndex] = new Segment(segmentSize, offHeap);
+			segments = grown;
+		}
+		segments[segmentIndex].register(slot % segmentSize, userId);
+		size = slot + 1;
+		dirty = true;
+		return slot;
+	}
+
+	/**
+	 * @return the number of registered users
+	 */
+	public int size() {
+		return size;
+	}
+
+	public void update(int slot, double latitude, double longitude, long timeVisited) {
+		segments[slot / segmentSize].update(slot % segmentSize, latitude, longitude, timeVisited);
+		// Read before write: no cache line traffic while the flag is already set
+		if(!dirty) {
+			dirty = true;
+		}
+	}
+
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	/**
+	 * Clears the dirty flag, to be called before reading the store: a change made during the read sets it again
+	 */
+	public void clearDirty() {
+		dirty = false;
+	}
+
+	/**
+	 * Calls the visitor with the latest location of every user that has one, in slot order. Allocates nothing.
+	 */
+	public void forEach(CurrentLocationVisitor visitor) {
+		forEach(0, Integer.MAX_VALUE, visitor);
+	}
+
+	/**
+	 * Calls the visitor for the users having a location among the slots [fromSlot, fromSlot + maxSlots)
+	 * @return the slot following the last visited one
+	 */
+	public int forEach(int fromSlot, int maxSlots, CurrentLocationVisitor visitor) {
+		// Size before segments: register publishes them in the opposite order, so the segments cover the size read
+		int size = this.size;
+		Segment[] segments = this.segments;
+		int end = (int) Math.min(size, (long) Math.max(0, fromSlot) + maxSlots);
+		for(int slot = Math.max(0, fromSlot); slot < end; slot++) {
+			segments[slot / segmentSize].visit(slot, slot % segmentSize, visitor);
+		}
+		return end;
+	}
+
+	private static class Segment {
+		private final LongBuffer mostSignificantBits;
+		private final LongBuffer leastSignificantBits;
+		private final DoubleBuffer latitudes;
+		private final DoubleBuffer longitudes;
+		private final LongBuffer times;
+		// Odd while the row is being written
+		private final AtomicLongArray versions;
+
+		Segment(int capacity, boolean offHeap) {
+			this.mostSignificantBits = allocate(capacity, offHeap).asLongBuffer();
+			this.leastSignificantBits = allocate(capacity, offHeap).asLongBuffer();
+			this.latitudes = allocate(capacity, offHeap).asDoubleBuffer();
+			this.longitudes = allocate(capacity, offHeap).asDoubleBuffer();
+			this.times = allocate(capacity, offHeap).asLongBuffer();
+			this.versions = new AtomicLongArray(capacity);
+		}
+
+		private static ByteBuffer allocate(int capacity, boolean offHeap) {
+			return offHeap ? ByteBuffer.allocateDirect(capacity * Long.BYTES) : ByteBuffer.allocate(capacity * Long.BYTES);
+		}
+
+		void register(int row, UUID userId) {
+			long version = versions.get(row);
+			versions.set(row, version + 1);
+			// Keeps the plain writes below from moving before the odd version, matching the reader's acquireFence
+			VarHandle.releaseFence();
+			mostSignificantBits.put(row, userId.getMostSignificantBits());
+			leastSignificantBits.put(row, userId.getLeastSignificantBits());
+			times.put(row, NO_LOCATION);
+			versions.set(row, version + 2);
+		}
+
+		void update(int row, double latitude, double longitude, long timeVisited) {
+			long version = versions.get(row);
+			versions.set(row, version + 1);
+			VarHandle.releaseFence();
+			latitudes.put(row, latitude);
+			longitudes.put(row, longitude);
+			times.put(row, timeVisited);
+			versions.set(row, version + 2);
+		}
+
+		void visit(int slot, int row, CurrentLocationVisitor visitor) {
+			long most;
+			long least;
+			double latitude;
+			double longitude;
+			long time;
+			while(true) {
+				long version = versions.get(row);
+				if((version & 1) != 0) {
+					Thread.onSpinWait();
+					continue;
+				}
+				most = mostSignificantBits.get(row);
+				least = leastSignificantBits.get(row);
+				latitude = latitudes.get(row);
+				longitude = longitudes.get(row);
+				time = times.get(row);
+				// Keeps the plain reads above from moving after the version check
+				VarHandle.acquireFence();
+				if(versions.get(row) == version) {
+					break;
+				}
+			}
+			if(time != NO_LOCATION) {
+				visitor.visit(slot, most, least, latitude, longitude, time);
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package tourGuide.store;
+
+/**
+ * Receives the rows of the CurrentLocationStore as primitives, the user id split in its two halves
+ */
+@FunctionalInterface
+public interface CurrentLocationVisitor {
+
+	void visit(int slot, long userIdMostSignificantBits, long userIdLeastSignificantBits, double latitude, double longitude, long timeVisited);
+}
@@ -0,0 +1,328 @@
+package tourGuide.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.UserPreferences;
+import tourGuide.domain.user.UserReward;
+
+/**
+ * Binary encoding of the journal records.
+ * A record is framed as [int length][byte type, payload][int CRC32 of type and payload]. A length of 0,
+ * a truncated record or a CRC mismatch marks the end of the written part of a file.
+ * UUIDs are two longs, coordinates doubles (NaN for a missing location), times longs (Long.MIN_VALUE
+ * for none) and strings an unsigned short byte count then UTF-8 (0xFFFF for null).
+ * Visited locations carry the sequence number they got in the user's history, or STATE_SEQUENCE when
+ * they are part of a user state written as a whole; a user record carries the history sequence number
+ * at the time its state was taken.
+ */
+class JournalRecords {
+
+	static final byte USER = 1;
+	static final byte VISITED_LOCATION = 2;
+	static final byte USER_REWARD = 3;
+	static final byte USER_PREFERENCES = 4;
+
+	static final long STATE_SEQUENCE = -1;
+
+	private static final int NULL_STRING = 0xFFFF;
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private JournalRecords() {
+	}
+
+	/**
+	 * Receives the decoded records
+	 */
+	interface Handler {
+		void user(UUID userId, long sequence, String userName, String phoneNumber, String emailAddress, UserPreferences userPreferences);
+
+		void visitedLocation(UUID userId, long sequence, VisitedLocation visitedLocation);
+
+		void userReward(UUID userId, UserReward userReward);
+
+		void userPreferences(UUID userId, UserPreferences userPreferences);
+	}
+
+	static byte[] user(User user, long sequence) {
+		byte[] userName = utf8(user.getUserName());
+		byte[] phoneNumber = utf8(user.getPhoneNumber());
+		byte[] emailAddress = utf8(user.getEmailAddress());
+		UserPreferences userPreferences = user.getUserPreferences();
+		byte[] currency = utf8(userPreferences == null ? null : userPreferences.getCurrency());
+		ByteBuffer buffer = frame(USER, 16 + 8 + sizeOf(userName) + sizeOf(phoneNumber) + sizeOf(emailAddress) + 1 + preferencesSize(currency));
+		putUuid(buffer, user.getUserId());
+		buffer.putLong(sequence);
+		putString(buffer, userName);
+		putString(buffer, phoneNumber);
+		putString(buffer, emailAddress);
+		buffer.put((byte) (userPreferences == null ? 0 : 1));
+		putPreferences(buffer, userPreferences, currency);
+		return seal(buffer);
+	}
+
+	/**
+	 * Encodes the whole state of a user: its user record, then its compacted and recent locations and its rewards
+	 */
+	static byte[] userState(User user) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		// User synchronizes on itself: the state is taken between two changes
+		synchronized(user) {
+			UUID userId = user.getUserId();
+			output.writeBytes(user(user, user.getVisitedLocationSequence()));
+			for(VisitedLocation visitedLocation : user.getCompactedVisitedLocations()) {
+				output.writeBytes(visitedLocation(userId, STATE_SEQUENCE, visitedLocation));
+			}
+			for(VisitedLocation visitedLocation : user.getVisitedLocations()) {
+				output.writeBytes(visitedLocation(userId, STATE_SEQUENCE, visitedLocation));
+			}
+			for(UserReward userReward : user.getUserRewards()) {
+				output.writeBytes(userReward(userId, userReward));
+			}
+		}
+		return output.toByteArray();
+	}
+
+	static byte[] visitedLocation(UUID userId, long sequence, VisitedLocation visitedLocation) {
+		ByteBuffer buffer = frame(VISITED_LOCATION, 16 + 8 + 24);
+		putUuid(buffer, userId);
+		buffer.putLong(sequence);
+		putVisitedLocation(buffer, visitedLocation);
+		return seal(buffer);
+	}
+
+	static byte[] userReward(UUID userId, UserReward userReward) {
+		Attraction attraction = userReward.attraction;
+		byte[] name = utf8(attraction.attractionName);
+		byte[] city = utf8(attraction.city);
+		byte[] state = utf8(attraction.state);
+		ByteBuffer buffer = frame(USER_REWARD, 16 + 16 + sizeOf(name) + sizeOf(city) + sizeOf(state) + 16 + 24 + 4);
+		putUuid(buffer, userId);
+		putUuid(buffer, attraction.attractionId);
+		putString(buffer, name);
+		putString(buffer, city);
+		putString(buffer, state);
+		buffer.putDouble(attraction.latitude);
+		buffer.putDouble(attraction.longitude);
+		putVisitedLocation(buffer, userReward.visitedLocation);
+		buffer.putInt(userReward.getRewardPoints());
+		return seal(buffer);
+	}
+
+	static byte[] userPreferences(UUID userId, UserPreferences userPreferences) {
+		byte[] currency = utf8(userPreferences.getCurrency());
+		ByteBuffer buffer = frame(USER_PREFERENCES, 16 + preferencesSize(currency));
+		putUuid(buffer, userId);
+		putPreferences(buffer, userPreferences, currency);
+		return seal(buffer);
+	}
+
+	/**
+	 * Reads records until the end of the written part of the stream
+	 * @return the number of records read
+	 */
+	static long read(InputStream inputStream, Handler handler) throws IOException {
+		DataInputStream input = new DataInputStream(inputStream);
+		long count = 0;
+		while(true) {
+			byte[] body;
+			int crc;
+			try {
+				int length = input.readInt();
+				if(length <= 0) {
+					return count;
+				}
+				body = new byte[length];
+				input.readFully(body);
+				crc = input.readInt();
+			} catch (EOFException e) {
+				return count;
+			}
+			CRC32 checksum = new CRC32();
+			checksum.update(body);
+			if((int) checksum.getValue() != crc) {
+				return count;
+			}
+			decode(ByteBuffer.wrap(body), handler);
+			count++;
+		}
+	}
+
+	/**
+	 * Reads records from the position of the buffer to the end of its written part, without copying them
+	 * @return the number of records read
+	 */
+	static long read(ByteBuffer buffer, Handler handler) {
+		long count = 0;
+		CRC32 checksum = new CRC32();
+		while(buffer.remaining() >= Integer.BYTES) {
+			int length = buffer.getInt();
+			if(length <= 0 || buffer.remaining() < length + Integer.BYTES) {
+				return count;
+			}
+			ByteBuffer body = buffer.slice();
+			body.limit(length);
+			checksum.reset();
+			checksum.update(body.duplicate());
+			buffer.position(buffer.position() + length);
+			if((int) checksum.getValue() != buffer.getInt()) {
+				return count;
+			}
+			decode(body, handler);
+			count++;
+		}
+		return count;
+	}
+
+	private static void decode(ByteBuffer buffer, Handler handler) {
+		byte type = buffer.get();
+		UUID userId = getUuid(buffer);
+		switch(type) {
+		case USER:
+			long userSequence = buffer.getLong();
+			String userName = getString(buffer);
+			String phoneNumber = getString(buffer);
+			String emailAddress = getString(buffer);
+			boolean hasPreferences = buffer.get() != 0;
+			handler.user(userId, userSequence, userName, phoneNumber, emailAddress, hasPreferences ? getPreferences(buffer) : null);
+			break;
+		case VISITED_LOCATION:
+			long sequence = buffer.getLong();
+			handler.visitedLocation(userId, sequence, getVisitedLocation(buffer, userId));
+			break;
+		case USER_REWARD:
+			Attraction attraction = new Attraction();
+			attraction.attractionId = getUuid(buffer);
+			attraction.attractionName = getString(buffer);
+			attraction.city = getString(buffer);
+			attraction.state = getString(buffer);
+			attraction.latitude = buffer.getDouble();
+			attraction.longitude = buffer.getDouble();
+			VisitedLocation visitedLocation = getVisitedLocation(buffer, userId);
+			handler.userReward(userId, new UserReward(visitedLocation, attraction, buffer.getInt()));
+			break;
+		case USER_PREFERENCES:
+			handler.userPreferences(userId, getPreferences(buffer));
+			break;
+		default:
+			// Unknown record type: written by a newer version, skipped
+		}
+	}
+
+	private static ByteBuffer frame(byte type, int payloadSize) {
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 1 + payloadSize + 4);
+		buffer.putInt(1 + payloadSize);
+		buffer.put(type);
+		return buffer;
+	}
+
+	private static byte[] seal(ByteBuffer buffer) {
+		CRC32 checksum = new CRC32();
+		checksum.update(buffer.array(), 4, buffer.position() - 4);
+		buffer.putInt((int) checksum.getValue());
+		return buffer.array();
+	}
+
+	private static int preferencesSize(byte[] currency) {
+		return 4 + sizeOf(currency) + 8 + 8 + 4 * 4;
+	}
+
+	private static void putPreferences(ByteBuffer buffer, UserPreferences userPreferences, byte[] currency) {
+		if(userPreferences == null) {
+			return;
+		}
+		buffer.putInt(userPreferences.getAttractionProximity());
+		putString(buffer, currency);
+		buffer.putDouble(userPreferences.getLowerPricePoint() == null ? Double.NaN : userPreferences.getLowerPricePoint());
+		buffer.putDouble(userPreferences.getHighPricePoint() == null ? Double.NaN : userPreferences.getHighPricePoint());
+		buffer.putInt(userPreferences.getTripDuration());
+		buffer.putInt(userPreferences.getTicketQuantity());
+		buffer.putInt(userPreferences.getNumberOfAdults());
+		buffer.putInt(userPreferences.getNumberOfChildren());
+	}
+
+	private static UserPreferences getPreferences(ByteBuffer buffer) {
+		UserPreferences userPreferences = new UserPreferences();
+		userPreferences.setAttractionProximity(buffer.getInt());
+		userPreferences.setCurrency(getString(buffer));
+		double lowerPricePoint = buffer.getDouble();
+		double highPricePoint = buffer.getDouble();
+		userPreferences.setLowerPricePoint(Double.isNaN(lowerPricePoint) ? null : lowerPricePoint);
+		userPreferences.setHighPricePoint(Double.isNaN(highPricePoint) ? null : highPricePoint);
+		userPreferences.setTripDuration(buffer.getInt());
+		userPreferences.setTicketQuantity(buffer.getInt());
+		userPreferences.setNumberOfAdults(buffer.getInt());
+		userPreferences.setNumberOfChildren(buffer.getInt());
+		return userPreferences;
+	}
+
+	private static void putVisitedLocation(ByteBuffer buffer, VisitedLocation visitedLocation) {
+		Location location = visitedLocation == null ? null : visitedLocation.location;
+		buffer.putDouble(location == null ? Double.NaN : location.latitude);
+		buffer.putDouble(location == null ? Double.NaN : location.longitude);
+		buffer.putLong(visitedLocation == null || visitedLocation.timeVisited == null ? NO_TIME : visitedLocation.timeVisited.getTime());
+	}
+
+	private static VisitedLocation getVisitedLocation(ByteBuffer buffer, UUID userId) {
+		double latitude = buffer.getDouble();
+		double longitude = buffer.getDouble();
+		long time = buffer.getLong();
+		Location location = Double.isNaN(latitude) ? null : new Location(latitude, longitude);
+		return new VisitedLocation(userId, location, time == NO_TIME ? null : new Date(time));
+	}
+
+	private static void putUuid(ByteBuffer buffer, UUID uuid) {
+		buffer.putLong(uuid.getMostSignificantBits());
+		buffer.putLong(uuid.getLeastSignificantBits());
+	}
+
+	private static UUID getUuid(ByteBuffer buffer) {
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+
+	private static byte[] utf8(String value) {
+		if(value == null) {
+			return null;
+		}
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if(bytes.length >= NULL_STRING) {
+			throw new IllegalArgumentException("String too long for the journal: " + bytes.length + " bytes");
+		}
+		return bytes;
+	}
+
+	private static int sizeOf(byte[] string) {
+		return 2 + (string == null ? 0 : string.length);
+	}
+
+	private static void putString(ByteBuffer buffer, byte[] string) {
+		if(string == null) {
+			buffer.putShort((short) NULL_STRING);
+			return;
+		}
+		buffer.putShort((short) string.length);
+		buffer.put(string);
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		int length = Short.toUnsignedInt(buffer.getShort());
+		if(length == NULL_STRING) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
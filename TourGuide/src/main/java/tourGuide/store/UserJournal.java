@@ -0,0 +1,436 @@
+package tourGuide.store;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.UserChangeListener;
+import tourGuide.domain.user.UserPreferences;
+import tourGuide.domain.user.UserReward;
+
+/**
+ * Append-only journal of the user changes, replayed into the registry on startup.
+ * Records go to memory-mapped segment files: an append is a copy into the mapped buffer, and a committer
+ * forces the pages to disk every commit interval for all the appends made meanwhile (group commit).
+ * A full segment is replaced at once and left to the committer, so that no append waits for its pages to be forced.
+ * A checkpoint rolls to a new segment, writes a user snapshot (see UserSnapshot) named after that segment,
+ * then deletes the older segments and checkpoints. Replay reads the latest checkpoint and
+ * the segments from its number on; changes already covered by the checkpoint are recognized by their
+ * history sequence number and skipped.
+ * Failures are logged and never reach the callers: a journal that cannot write only loses durability.
+ */
+@Component
+public class UserJournal implements UserChangeListener {
+	private Logger logger = LoggerFactory.getLogger(UserJournal.class);
+
+	private static final int MAGIC = 0x54474A31;
+	private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.journal");
+	private static final Pattern CHECKPOINT_FILE = Pattern.compile("checkpoint-(\\d+)\\.snapshot");
+
+	private final boolean enabled;
+	private final Path directory;
+	private final int segmentSize;
+	private final long commitIntervalMillis;
+	private final long checkpointIntervalMinutes;
+	private final UserSnapshot userSnapshot;
+
+	private final Object appendLock = new Object();
+	private final Object commitLock = new Object();
+	private final Object checkpointLock = new Object();
+	private FileChannel channel;
+	private volatile MappedByteBuffer segment;
+	private long segmentNumber;
+	// Segments rolled over and not forced to disk yet, oldest first
+	private final Queue<RetiredSegment> retiredSegments = new ConcurrentLinkedQueue<>();
+	// Records appended and records forced to disk since the journal was opened
+	private volatile long appendedRecords;
+	private volatile long committedRecords;
+	private UserRegistry registry;
+	private ScheduledExecutorService committer;
+	private ScheduledExecutorService checkpointer;
+
+	public UserJournal() {
+		this(new TourGuideProperties());
+	}
+
+	public UserJournal(TourGuideProperties properties) {
+		this(properties, new UserSnapshot(properties));
+	}
+
+	@Autowired
+	public UserJournal(TourGuideProperties properties, UserSnapshot userSnapshot) {
+		this.userSnapshot = userSnapshot;
+		TourGuideProperties.Journal journal = properties.getJournal();
+		this.enabled = journal.isEnabled();
+		this.directory = Paths.get(journal.getDirectory());
+		this.segmentSize = (int) Math.min(Integer.MAX_VALUE, Math.max(1, journal.getSegmentSizeMb()) * 1024L * 1024L);
+		this.commitIntervalMillis = Math.max(1, journal.getCommitIntervalMillis());
+		this.checkpointIntervalMinutes = journal.getCheckpointIntervalMinutes();
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	public boolean isOpen() {
+		return segment != null;
+	}
+
+	/**
+	 * Replays the journal into the registry, then checkpoints it so that the new appends start from a clean state,
+	 * and starts the committer and the periodic checkpoints. Replayed users have no listener.
+	 * @return the number of users restored
+	 */
+	public int open(UserRegistry registry) {
+		this.registry = registry;
+		int sizeBefore = registry.size();
+		try {
+			Files.createDirectories(directory);
+			replay(registry);
+		} catch (IOException e) {
+			logger.error("Journal replay failed, the journal is disabled", e);
+			return registry.size() - sizeBefore;
+		}
+		int restored = registry.size() - sizeBefore;
+		if(!checkpoint()) {
+			logger.error("Journal checkpoint failed on startup, the journal is disabled");
+			close();
+			return restored;
+		}
+		committer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("journal-committer"));
+		committer.scheduleWithFixedDelay(this::commit, commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+		if(checkpointIntervalMinutes > 0) {
+			checkpointer = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("journal-checkpoint"));
+			checkpointer.scheduleWithFixedDelay(this::checkpoint, checkpointIntervalMinutes, checkpointIntervalMinutes, TimeUnit.MINUTES);
+		}
+		logger.info("Journal opened in " + directory.toAbsolutePath() + ", " + restored + " users restored");
+		return restored;
+	}
+
+	/**
+	 * Journals the whole state of a user, then every change made to it
+	 */
+	public void register(User user) {
+		// User synchronizes on itself: no change can slip between the state and the listener
+		synchronized(user) {
+			append(JournalRecords.userState(user));
+			user.setChangeListener(this);
+		}
+	}
+
+	@Override
+	public void visitedLocationAdded(User user, VisitedLocation visitedLocation) {
+		// Called under the user's lock, right after the location got its sequence number
+		append(JournalRecords.visitedLocation(user.getUserId(), user.getVisitedLocationSequence() - 1, visitedLocation));
+	}
+
+	@Override
+	public void userRewardAdded(User user, UserReward userReward) {
+		append(JournalRecords.userReward(user.getUserId(), userReward));
+	}
+
+	@Override
+	public void userPreferencesChanged(User user, UserPreferences userPreferences) {
+		append(JournalRecords.userPreferences(user.getUserId(), userPreferences));
+	}
+
+	/**
+	 * Forces to disk every record appended before the call
+	 */
+	public void sync() {
+		commit();
+	}
+
+	/**
+	 * Writes the state of every user to a new checkpoint and deletes the files it makes obsolete
+	 * @return true if the checkpoint was written
+	 */
+	public boolean checkpoint() {
+		synchronized(checkpointLock) {
+			if(registry == null) {
+				return false;
+			}
+			long number;
+			try {
+				synchronized(appendLock) {
+					roll();
+					number = segmentNumber;
+				}
+			} catch (IOException e) {
+				logger.error("Journal checkpoint failed to open a new segment", e);
+				return false;
+			}
+			// Outside the append lock: the segment left behind is forced while the appends go on in the new one
+			commit();
+			long users;
+			try {
+				users = userSnapshot.save(registry, directory.resolve("checkpoint-" + number + ".snapshot"));
+			} catch (IOException | RuntimeException e) {
+				logger.error("Journal checkpoint " + number + " failed", e);
+				return false;
+			}
+			deleteBefore(number);
+			logger.debug("Journal checkpoint {} written with {} users", number, users);
+			return true;
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		if(committer != null) {
+			committer.shutdownNow();
+		}
+		if(checkpointer != null) {
+			checkpointer.shutdownNow();
+		}
+		synchronized(appendLock) {
+			if(segment != null) {
+				commit();
+				segment = null;
+				closeChannel(channel, segmentNumber);
+				channel = null;
+			}
+		}
+	}
+
+	private void append(byte[] records) {
+		synchronized(appendLock) {
+			if(segment == null) {
+				return;
+			}
+			try {
+				if(segment.remaining() < records.length) {
+					if(records.length > segmentSize - Integer.BYTES) {
+						logger.error("Journal records of " + records.length + " bytes do not fit in a segment, dropped");
+						return;
+					}
+					roll();
+				}
+				segment.put(records);
+				appendedRecords++;
+			} catch (IOException e) {
+				logger.error("Journal append failed", e);
+			}
+		}
+	}
+
+	private void commit() {
+		synchronized(commitLock) {
+			// Read before the segments: a record counted here is either in a segment already retired or in the current one
+			long target = appendedRecords;
+			RetiredSegment retired;
+			while((retired = retiredSegments.poll()) != null) {
+				retired.buffer.force();
+				closeChannel(retired.channel, retired.number);
+			}
+			MappedByteBuffer current = segment;
+			if(current == null || target <= committedRecords) {
+				return;
+			}
+			current.force();
+			committedRecords = Math.max(committedRecords, target);
+		}
+	}
+
+	// Called with the append lock held: the segment left behind is forced and closed by the next commit
+	private void roll() throws IOException {
+		long number = segmentNumber + 1;
+		Path path = directory.resolve("segment-" + number + ".journal");
+		FileChannel next = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer mapped;
+		try {
+			mapped = next.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		} catch (IOException e) {
+			closeChannel(next, number);
+			throw e;
+		}
+		mapped.putInt(MAGIC);
+		if(segment != null) {
+			retiredSegments.add(new RetiredSegment(channel, segment, segmentNumber));
+		}
+		channel = next;
+		segmentNumber = number;
+		segment = mapped;
+	}
+
+	private void closeChannel(FileChannel channel, long number) {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			logger.warn("Journal segment " + number + " did not close cleanly", e);
+		}
+	}
+
+	private void replay(UserRegistry registry) throws IOException {
+		Map<Long, Path> checkpoints = list(CHECKPOINT_FILE);
+		Map<Long, Path> segments = list(SEGMENT_FILE);
+		long checkpoint = checkpoints.keySet().stream().mapToLong(Long::longValue).max().orElse(0);
+		Map<UUID, Long> stateSequences = new ConcurrentHashMap<>();
+		if(checkpoint > 0) {
+			userSnapshot.load(checkpoints.get(checkpoint), registry, stateSequences);
+		}
+		ReplayHandler handler = new ReplayHandler(registry, stateSequences);
+		long records = 0;
+		List<Long> numbers = new ArrayList<>(segments.keySet());
+		numbers.sort(null);
+		for(long number : numbers) {
+			if(number >= checkpoint) {
+				records += replay(segments.get(number), handler);
+			}
+		}
+		segmentNumber = Math.max(checkpoint, numbers.isEmpty() ? 0 : numbers.get(numbers.size() - 1));
+		logger.debug("Journal replayed {} records after checkpoint {}", records, checkpoint);
+	}
+
+	private long replay(Path path, JournalRecords.Handler handler) throws IOException {
+		try(InputStream input = new BufferedInputStream(Files.newInputStream(path), 64 * 1024)) {
+			DataInputStream data = new DataInputStream(input);
+			if(Files.size(path) < Integer.BYTES || data.readInt() != MAGIC) {
+				logger.warn("Journal file " + path + " has no valid header, skipped");
+				return 0;
+			}
+			return JournalRecords.read(input, handler);
+		}
+	}
+
+	private Map<Long, Path> list(Pattern pattern) throws IOException {
+		Map<Long, Path> files = new HashMap<>();
+		try(Stream<Path> paths = Files.list(directory)) {
+			paths.forEach(path -> {
+				Matcher matcher = pattern.matcher(path.getFileName().toString());
+				if(matcher.matches()) {
+					files.put(Long.parseLong(matcher.group(1)), path);
+				}
+			});
+		}
+		return files;
+	}
+
+	private void deleteBefore(long number) {
+		try {
+			for(Pattern pattern : new Pattern[] { SEGMENT_FILE, CHECKPOINT_FILE }) {
+				for(Map.Entry<Long, Path> file : list(pattern).entrySet()) {
+					if(file.getKey() < number) {
+						Files.deleteIfExists(file.getValue());
+					}
+				}
+			}
+		} catch (IOException e) {
+			logger.warn("Journal files older than checkpoint " + number + " could not all be deleted", e);
+		}
+	}
+
+	private static ThreadFactory daemonThreadFactory(String name) {
+		return runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	private static class RetiredSegment {
+		private final FileChannel channel;
+		private final MappedByteBuffer buffer;
+		private final long number;
+
+		private RetiredSegment(FileChannel channel, MappedByteBuffer buffer, long number) {
+			this.channel = channel;
+			this.buffer = buffer;
+			this.number = number;
+		}
+	}
+
+	/**
+	 * Applies the segment records over the checkpoint. A location with a sequence number below the one of the
+	 * user's latest state is already part of that state; the state of a user that already exists was written
+	 * again by a registration racing a checkpoint and is ignored.
+	 */
+	private static class ReplayHandler implements JournalRecords.Handler {
+		private final UserRegistry registry;
+		private final Map<UUID, Long> stateSequences;
+		private final Set<UUID> repeatedStates = new HashSet<>();
+
+		ReplayHandler(UserRegistry registry, Map<UUID, Long> stateSequences) {
+			this.registry = registry;
+			this.stateSequences = stateSequences;
+		}
+
+		@Override
+		public void user(UUID userId, long sequence, String userName, String phoneNumber, String emailAddress, UserPreferences userPreferences) {
+			stateSequences.merge(userId, sequence, Math::max);
+			if(registry.getById(userId) != null) {
+				repeatedStates.add(userId);
+				return;
+			}
+			User user = registry.newUser(userId, userName, phoneNumber, emailAddress);
+			if(userPreferences != null) {
+				user.setUserPreferences(userPreferences);
+			}
+			if(!registry.addIfAbsent(user)) {
+				repeatedStates.add(userId);
+			}
+		}
+
+		@Override
+		public void visitedLocation(UUID userId, long sequence, VisitedLocation visitedLocation) {
+			User user = registry.getById(userId);
+			if(user == null) {
+				return;
+			}
+			if(sequence == JournalRecords.STATE_SEQUENCE ? repeatedStates.contains(userId) : sequence < stateSequences.getOrDefault(userId, 0L)) {
+				return;
+			}
+			user.addToVisitedLocations(visitedLocation);
+		}
+
+		@Override
+		public void userReward(UUID userId, UserReward userReward) {
+			User user = registry.getById(userId);
+			if(user != null) {
+				user.addUserReward(userReward);
+			}
+		}
+
+		@Override
+		public void userPreferences(UUID userId, UserPreferences userPreferences) {
+			User user = registry.getById(userId);
+			if(user != null) {
+				user.setUserPreferences(userPreferences);
+			}
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package tourGuide.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.VisitedLocationHistory;
+
+/**
+ * Thread-safe registry of the users, by name and by id.
+ * Users are spread over a fixed number of shards on the hash of their name. Every view is live and weakly
+ * consistent: users added or removed during an iteration may or may not be seen, and nothing is copied.
+ * The tracker walks the registry shard by shard through partitions().
+ * Users created through newUser get the visited locations history policy of the registry.
+ */
+public class UserRegistry {
+
+	public static final int DEFAULT_SHARD_COUNT = 16;
+
+	private final List<ConcurrentMap<String, User>> shards;
+	private final List<Collection<User>> partitions;
+	private final ConcurrentMap<UUID, User> usersById = new ConcurrentHashMap<>();
+	private final VisitedLocationHistory.Policy historyPolicy;
+
+	public UserRegistry() {
+		this(DEFAULT_SHARD_COUNT);
+	}
+
+	public UserRegistry(int shardCount) {
+		this(shardCount, VisitedLocationHistory.DEFAULT_POLICY);
+	}
+
+	public UserRegistry(VisitedLocationHistory.Policy historyPolicy) {
+		this(DEFAULT_SHARD_COUNT, historyPolicy);
+	}
+
+	public UserRegistry(int shardCount, VisitedLocationHistory.Policy historyPolicy) {
+		this.historyPolicy = historyPolicy;
+		int count = Math.max(1, shardCount);
+		List<ConcurrentMap<String, User>> shards = new ArrayList<>(count);
+		List<Collection<User>> partitions = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			ConcurrentMap<String, User> shard = new ConcurrentHashMap<>();
+			shards.add(shard);
+			partitions.add(Collections.unmodifiableCollection(shard.values()));
+		}
+		this.shards = Collections.unmodifiableList(shards);
+		this.partitions = Collections.unmodifiableList(partitions);
+	}
+
+	/**
+	 * @return a new user with the history policy of the registry, not registered yet
+	 */
+	public User newUser(UUID userId, String userName, String phoneNumber, String emailAddress) {
+		return new User(userId, userName, phoneNumber, emailAddress, historyPolicy);
+	}
+
+	/**
+	 * Adds the user unless a user with the same name is already registered
+	 * @return true if the user was added
+	 */
+	public boolean addIfAbsent(User user) {
+		if(shardOf(user.getUserName()).putIfAbsent(user.getUserName(), user) != null) {
+			return false;
+		}
+		usersById.put(user.getUserId(), user);
+		return true;
+	}
+
+	public User getByName(String userName) {
+		return userName == null ? null : shardOf(userName).get(userName);
+	}
+
+	public User getById(UUID userId) {
+		return userId == null ? null : usersById.get(userId);
+	}
+
+	public int size() {
+		int size = 0;
+		for(ConcurrentMap<String, User> shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return one live, read-only view per shard
+	 */
+	public List<Collection<User>> partitions() {
+		return partitions;
+	}
+
+	public void forEach(Consumer<User> action) {
+		for(Collection<User> partition : partitions) {
+			partition.forEach(action);
+		}
+	}
+
+	/**
+	 * @return a spliterator splitting across shards first, then within a shard
+	 */
+	public Spliterator<User> spliterator() {
+		return new ShardSpliterator(0, partitions.size());
+	}
+
+	public Stream<User> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	public Stream<User> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
+	private ConcurrentMap<String, User> shardOf(String userName) {
+		return shards.get(Math.floorMod(spread(userName.hashCode()), shards.size()));
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Covers the shards [from, to). A single shard is delegated to its map's own spliterator.
+	 */
+	private class ShardSpliterator implements Spliterator<User> {
+		private int from;
+		private int to;
+		private Spliterator<User> current;
+
+		ShardSpliterator(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super User> action) {
+			while(true) {
+				if(current == null) {
+					if(from >= to) {
+						return false;
+					}
+					current = partitions.get(from++).spliterator();
+				}
+				if(current.tryAdvance(action)) {
+					return true;
+				}
+				current = null;
+			}
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super User> action) {
+			if(current != null) {
+				current.forEachRemaining(action);
+				current = null;
+			}
+			while(from < to) {
+				partitions.get(from++).spliterator().forEachRemaining(action);
+			}
+		}
+
+		@Override
+		public Spliterator<User> trySplit() {
+			int remaining = to - from;
+			if(remaining > 1) {
+				int middle = from + remaining / 2;
+				Spliterator<User> suffix = new ShardSpliterator(middle, to);
+				to = middle;
+				return suffix;
+			}
+			if(current == null && remaining == 1) {
+				current = partitions.get(from++).spliterator();
+			}
+			return current == null ? null : current.trySplit();
+		}
+
+		@Override
+		public long estimateSize() {
+			long size = current == null ? 0 : current.estimateSize();
+			for(int i = from; i < to; i++) {
+				size += partitions.get(i).size();
+			}
+			return size;
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.DISTINCT;
+		}
+	}
+}
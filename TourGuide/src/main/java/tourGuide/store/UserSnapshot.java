@@ -0,0 +1,304 @@
+package tourGuide.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.UserPreferences;
+import tourGuide.domain.user.UserReward;
+
+/**
+ * Binary snapshot of the whole user population, written and read in parallel by chunks of users.
+ * Layout: a header (magic, version, offset of the chunk table, user count), the chunks, then the chunk
+ * table (count, then offset, length and user count of each chunk). A chunk is a sequence of user states in
+ * the journal record format: fixed-width UUIDs, coordinates and timestamps, and a CRC per record.
+ * Chunks are encoded concurrently and written wherever the file has grown to, which keeps the memory used
+ * to a few chunks; they are loaded concurrently from memory-mapped regions.
+ * A snapshot is written to a temporary file, then moved over the previous one.
+ */
+@Component
+public class UserSnapshot {
+	private Logger logger = LoggerFactory.getLogger(UserSnapshot.class);
+
+	private static final int MAGIC = 0x54475331;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4 + 4 + 8 + 8;
+	private static final int CHUNK_ENTRY_SIZE = 8 + 4 + 4;
+
+	private final Path path;
+	private final boolean loadOnStartup;
+	private final boolean saveOnShutdown;
+	private final int chunkUsers;
+	private final int parallelism;
+
+	public UserSnapshot() {
+		this(new TourGuideProperties());
+	}
+
+	@Autowired
+	public UserSnapshot(TourGuideProperties properties) {
+		TourGuideProperties.Snapshot snapshot = properties.getSnapshot();
+		this.path = Paths.get(snapshot.getPath());
+		this.loadOnStartup = snapshot.isLoadOnStartup();
+		this.saveOnShutdown = snapshot.isSaveOnShutdown();
+		this.chunkUsers = Math.max(1, snapshot.getChunkUsers());
+		this.parallelism = snapshot.getParallelism() > 0 ? snapshot.getParallelism() : Runtime.getRuntime().availableProcessors();
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	public boolean isLoadOnStartup() {
+		return loadOnStartup;
+	}
+
+	public boolean isSaveOnShutdown() {
+		return saveOnShutdown;
+	}
+
+	/**
+	 * Writes every user of the registry to the configured snapshot file
+	 * @return the number of users written
+	 */
+	public long save(UserRegistry registry) throws IOException {
+		return save(registry, path);
+	}
+
+	/**
+	 * Loads the configured snapshot file into the registry, if it exists
+	 * @return the number of users added
+	 */
+	public int loadIfPresent(UserRegistry registry) throws IOException {
+		return Files.exists(path) ? load(path, registry, null) : 0;
+	}
+
+	long save(UserRegistry registry, Path target) throws IOException {
+		long start = System.nanoTime();
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, daemonThreadFactory("user-snapshot-save"));
+		long users;
+		try {
+			try(FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+				AtomicLong end = new AtomicLong(HEADER_SIZE);
+				List<long[]> chunks = Collections.synchronizedList(new ArrayList<>());
+				List<Future<?>> futures = new ArrayList<>();
+				// Bounds the chunks held in memory, encoded or waiting to be
+				Semaphore inFlight = new Semaphore(parallelism * 2);
+				users = 0;
+				Iterator<User> iterator = registry.stream().iterator();
+				while(iterator.hasNext()) {
+					List<User> batch = new ArrayList<>(chunkUsers);
+					while(batch.size() < chunkUsers && iterator.hasNext()) {
+						batch.add(iterator.next());
+					}
+					users += batch.size();
+					acquire(inFlight);
+					futures.add(executor.submit((Callable<Void>) () -> {
+						try {
+							ByteArrayOutputStream output = new ByteArrayOutputStream();
+							for(User user : batch) {
+								output.writeBytes(JournalRecords.userState(user));
+							}
+							ByteBuffer bytes = ByteBuffer.wrap(output.toByteArray());
+							long offset = end.getAndAdd(bytes.remaining());
+							chunks.add(new long[] { offset, bytes.remaining(), batch.size() });
+							writeFully(channel, bytes, offset);
+							return null;
+						} finally {
+							inFlight.release();
+						}
+					}));
+				}
+				await(futures);
+
+				ByteBuffer table = ByteBuffer.allocate(4 + chunks.size() * CHUNK_ENTRY_SIZE);
+				table.putInt(chunks.size());
+				for(long[] chunk : chunks) {
+					table.putLong(chunk[0]).putInt((int) chunk[1]).putInt((int) chunk[2]);
+				}
+				long tableOffset = end.get();
+				writeFully(channel, table.flip(), tableOffset);
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(VERSION).putLong(tableOffset).putLong(users);
+				writeFully(channel, header.flip(), 0);
+				channel.force(true);
+			}
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			logger.info("Snapshot of " + users + " users written to " + target + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+			return users;
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(temporary);
+			throw e;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads a snapshot into the registry. Users already in the registry are kept as they are.
+	 * @param stateSequences receives the history sequence number of every loaded user state, null if not needed
+	 * @return the number of users added
+	 */
+	int load(Path source, UserRegistry registry, Map<UUID, Long> stateSequences) throws IOException {
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism, daemonThreadFactory("user-snapshot-load"));
+		try(FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+			ByteBuffer header = readFully(channel, HEADER_SIZE, 0);
+			if(header.getInt() != MAGIC || header.getInt() != VERSION) {
+				throw new IOException("Not a user snapshot: " + source);
+			}
+			long tableOffset = header.getLong();
+			int chunkCount = readFully(channel, 4, tableOffset).getInt();
+			ByteBuffer table = readFully(channel, chunkCount * CHUNK_ENTRY_SIZE, tableOffset + 4);
+			AtomicInteger added = new AtomicInteger();
+			List<Future<?>> futures = new ArrayList<>(chunkCount);
+			for(int i = 0; i < chunkCount; i++) {
+				long offset = table.getLong();
+				int length = table.getInt();
+				table.getInt();
+				futures.add(executor.submit((Callable<Void>) () -> {
+					StateLoader loader = new StateLoader(registry, stateSequences);
+					JournalRecords.read(channel.map(FileChannel.MapMode.READ_ONLY, offset, length), loader);
+					added.addAndGet(loader.added);
+					return null;
+				}));
+			}
+			await(futures);
+			logger.info("Snapshot of " + added.get() + " users loaded from " + source + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+			return added.get();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+		try {
+			semaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing the snapshot");
+		}
+	}
+
+	private static void await(List<Future<?>> futures) throws IOException {
+		try {
+			for(Future<?> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the snapshot chunks");
+		} catch (ExecutionException e) {
+			if(e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Snapshot chunk failed", e.getCause());
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, int size, long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		while(buffer.hasRemaining()) {
+			if(channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Truncated user snapshot");
+			}
+		}
+		return buffer.flip();
+	}
+
+	private static ThreadFactory daemonThreadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Rebuilds the users of one chunk, where each user record is followed by the rest of its state
+	 */
+	private static class StateLoader implements JournalRecords.Handler {
+		private final UserRegistry registry;
+		private final Map<UUID, Long> stateSequences;
+		private User current;
+		private int added;
+
+		StateLoader(UserRegistry registry, Map<UUID, Long> stateSequences) {
+			this.registry = registry;
+			this.stateSequences = stateSequences;
+		}
+
+		@Override
+		public void user(UUID userId, long sequence, String userName, String phoneNumber, String emailAddress, UserPreferences userPreferences) {
+			User user = registry.newUser(userId, userName, phoneNumber, emailAddress);
+			if(userPreferences != null) {
+				user.setUserPreferences(userPreferences);
+			}
+			current = registry.addIfAbsent(user) ? user : null;
+			if(current != null) {
+				added++;
+				if(stateSequences != null) {
+					stateSequences.put(userId, sequence);
+				}
+			}
+		}
+
+		@Override
+		public void visitedLocation(UUID userId, long sequence, VisitedLocation visitedLocation) {
+			if(current != null && current.getUserId().equals(userId)) {
+				current.addToVisitedLocations(visitedLocation);
+			}
+		}
+
+		@Override
+		public void userReward(UUID userId, UserReward userReward) {
+			if(current != null && current.getUserId().equals(userId)) {
+				current.addUserReward(userReward);
+			}
+		}
+
+		@Override
+		public void userPreferences(UUID userId, UserPreferences userPreferences) {
+			if(current != null && current.getUserId().equals(userId)) {
+				current.setUserPreferences(userPreferences);
+			}
+		}
+	}
+}
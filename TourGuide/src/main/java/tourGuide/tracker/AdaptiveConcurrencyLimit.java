@@ -0,0 +1,65 @@
+package tourGuide.tracker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency limit adjusted by additive increase and multiplicative decrease (AIMD): raised by a fixed step
+ * while the tracker falls behind its schedule for lack of slots, cut by a factor when the downstream services
+ * start failing, so that concurrency settles at what the services sustain.
+ */
+class AdaptiveConcurrencyLimit {
+
+	private final int minLimit;
+	private final int maxLimit;
+	private final int increment;
+	private final double decreaseFactor;
+	private int limit;
+	private int inFlight;
+
+	AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, int increment, double decreaseFactor) {
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.increment = Math.max(1, increment);
+		this.decreaseFactor = decreaseFactor;
+		this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+	}
+
+	/**
+	 * Waits at most timeout for a slot
+	 * @return true if a slot was taken
+	 */
+	synchronized boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while(inFlight >= limit) {
+			long remaining = deadline - System.nanoTime();
+			if(remaining <= 0) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.timedWait(this, remaining);
+		}
+		inFlight++;
+		return true;
+	}
+
+	synchronized void release() {
+		inFlight--;
+		notifyAll();
+	}
+
+	synchronized void increase() {
+		limit = Math.min(maxLimit, limit + increment);
+		notifyAll();
+	}
+
+	synchronized void decrease() {
+		limit = Math.max(minLimit, (int) (limit * decreaseFactor));
+	}
+
+	synchronized int getLimit() {
+		return limit;
+	}
+
+	synchronized int getInFlight() {
+		return inFlight;
+	}
+}
@@ -0,0 +1,14 @@
+package tourGuide.tracker;
+
+/**
+ * How the tracker runs the track-and-reward task of each user
+ */
+public enum ExecutionMode {
+	/** One pool thread per user, blocked on each downstream call */
+	PLATFORM,
+	/** Non-blocking pipeline on HttpClient.sendAsync, concurrency capped by a permit count */
+	ASYNC,
+	/** One virtual thread per user running the blocking code, concurrency capped by a permit count.
+	 * Falls back to PLATFORM when the JVM has no virtual threads (Java 11) */
+	VIRTUAL
+}
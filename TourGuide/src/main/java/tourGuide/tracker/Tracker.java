@@ -1,86 +1,651 @@
 package tourGuide.tracker;
 
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.lang3.time.StopWatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import tourGuide.configuration.TourGuideProperties;
 import tourGuide.domain.user.User;
+import tourGuide.helper.VirtualThreads;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
 
+/**
+ * Tracks every user once per polling interval, all at once each interval (CYCLE scheduling) or spread evenly
+ * over the interval under an adaptive concurrency limit (CONTINUOUS scheduling).
+ * Measured in the meter registry: tourguide.tracker.cycle.duration, the users tracked, the failures and the
+ * skipped cycles, and as gauges the throughput of the last cycle, the users in flight and the workers queue depth.
+ * CONTINUOUS scheduling adds tourguide.tracker.lag, how late each user was tracked past its deadline
+ * (its previous tracking plus the polling interval), the schedule delay of the dispatcher and the concurrency limit.
+ */
 public class Tracker extends Thread {
 	private Logger logger = LoggerFactory.getLogger(Tracker.class);
 
-	private static final long trackingPollingInterval = TimeUnit.MINUTES.toSeconds(1);//initial = 5
+	private final long trackingPollingInterval;
 	private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-	//private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+	// Long-lived workers, fed through a bounded queue: submitting blocks while the queue is full
+	private final ThreadPoolExecutor workers;
+	// VIRTUAL mode: one virtual thread per user, null in the other modes
+	private final ExecutorService virtualWorkers;
+	// ASYNC and VIRTUAL modes: caps the number of users whose pipeline is in flight
+	private final Semaphore inFlightPermits;
+	private final ExecutionMode mode;
 	private final TourGuideService tourGuideService;
 	private final RewardsService rewardsService;
-	private boolean stop = false;
+	private volatile boolean stop = false;
+
+	private final AtomicLong cycle = new AtomicLong();
+	private volatile TrackerCycleResult lastCycleResult;
+	private final Object cycleResultLock = new Object();
+
+	// Users whose tracking is running, not counting those queued for a worker
+	private final AtomicInteger runningUsers = new AtomicInteger();
+	private volatile double lastCycleThroughput;
+	private final Timer cycleTimer;
+	private final Counter usersTrackedCounter;
+	private final Counter failuresCounter;
+	private final Counter skippedCyclesCounter;
+
+	private final TrackerScheduling scheduling;
+	// CONTINUOUS scheduling
+	private final AdaptiveConcurrencyLimit concurrencyLimit;
+	private final long lagTargetMillis;
+	private final long adjustIntervalMillis;
+	private final double maxErrorRate;
+	private final Map<UUID, Long> lastTrackedAt = new ConcurrentHashMap<>();
+	private final AtomicInteger windowCompletions = new AtomicInteger();
+	private final AtomicInteger windowFailures = new AtomicInteger();
+	private final Timer lagTimer;
+	private volatile long scheduleDelayMillis;
+	// Touched by the dispatcher thread only
+	private boolean windowWaitedForSlot;
+	private long windowMaxDelayMillis;
 
 	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService) {
+		this(tourGuideService, rewardsService, new TourGuideProperties());
+	}
+
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, TourGuideProperties properties) {
+		this(tourGuideService, rewardsService, properties, new SimpleMeterRegistry());
+	}
+
+	public Tracker(TourGuideService tourGuideService, RewardsService rewardsService, TourGuideProperties properties, MeterRegistry meterRegistry) {
 		this.tourGuideService = tourGuideService;
 		this.rewardsService = rewardsService;
 
+		TourGuideProperties.Tracker tracker = properties.getTracker();
+		this.trackingPollingInterval = TimeUnit.SECONDS.toMillis(tracker.getPollingIntervalSeconds());
+		ExecutorService virtualExecutor = null;
+		ExecutionMode requestedMode = tracker.getMode();
+		if(requestedMode == ExecutionMode.VIRTUAL) {
+			virtualExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor().orElse(null);
+			if(virtualExecutor == null) {
+				logger.warn("Virtual threads are not supported by this JVM, tracker falls back to PLATFORM mode");
+				requestedMode = ExecutionMode.PLATFORM;
+			}
+		}
+		this.mode = requestedMode;
+		this.virtualWorkers = virtualExecutor;
+		this.inFlightPermits = new Semaphore(Math.max(1, tracker.getMaxInFlight()));
+		int poolSize = Math.max(1, tracker.getPoolSize());
+		this.scheduling = tracker.getScheduling();
+		this.lagTargetMillis = tracker.getLagTargetMillis();
+		this.adjustIntervalMillis = Math.max(1, tracker.getAdjustIntervalMillis());
+		this.maxErrorRate = tracker.getMaxErrorRate();
+		// In PLATFORM mode the workers run at most poolSize users anyway
+		int maxConcurrency = mode == ExecutionMode.PLATFORM ? Math.min(poolSize, tracker.getMaxInFlight()) : tracker.getMaxInFlight();
+		this.concurrencyLimit = new AdaptiveConcurrencyLimit(tracker.getMinConcurrency(), tracker.getMinConcurrency(), maxConcurrency,
+				tracker.getConcurrencyIncrement(), tracker.getConcurrencyDecreaseFactor());
+		int queueCapacity = Math.max(1, tracker.getQueueCapacity());
+		AtomicInteger workerCount = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+			Thread thread = new Thread(runnable, "tracker-worker-" + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, Tracker::waitForQueueSpace);
+
+		this.cycleTimer = Timer.builder("tourguide.tracker.cycle.duration")
+				.description("Time to track every user once")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		this.usersTrackedCounter = Counter.builder("tourguide.tracker.users.tracked").register(meterRegistry);
+		this.failuresCounter = Counter.builder("tourguide.tracker.failures").register(meterRegistry);
+		this.skippedCyclesCounter = Counter.builder("tourguide.tracker.cycles.skipped")
+				.description("Polling slots missed because a cycle overran the interval")
+				.register(meterRegistry);
+		Gauge.builder("tourguide.tracker.users.per.second", this, Tracker::getLastCycleThroughput)
+				.description("Users tracked per second during the last cycle")
+				.register(meterRegistry);
+		Gauge.builder("tourguide.tracker.in.flight", runningUsers, AtomicInteger::get)
+				.description("Users whose tracking is running")
+				.register(meterRegistry);
+		Gauge.builder("tourguide.tracker.queue.depth", workers, pool -> pool.getQueue().size())
+				.description("Users waiting for a tracker worker")
+				.register(meterRegistry);
+		this.lagTimer = Timer.builder("tourguide.tracker.lag")
+				.description("Time past its deadline when a user's tracking completed")
+				.publishPercentileHistogram()
+				.register(meterRegistry);
+		Gauge.builder("tourguide.tracker.schedule.delay", this, Tracker::getScheduleDelayMillis)
+				.description("How late the dispatcher was on its schedule, in milliseconds")
+				.register(meterRegistry);
+		Gauge.builder("tourguide.tracker.concurrency.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+				.register(meterRegistry);
+
 		executorService.submit(this);
 	}
-	
+
 	/**
-	 * Assures to shut down the Tracker thread
+	 * Assures to shut down the Tracker thread. trackUsers can still be called until shutdown.
 	 */
 	public void stopTracking() {
 		stop = true;
 		executorService.shutdownNow();
 	}
-	
+
+	/**
+	 * Stops the Tracker thread and releases the workers
+	 */
+	public void shutdown() {
+		stopTracking();
+		// Queued users will not be tracked, but trackUsers must still see them completed
+		workers.shutdownNow().forEach(task -> ((WorkerTask) task).skip());
+		if(virtualWorkers != null) {
+			virtualWorkers.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the mode users are actually tracked in, PLATFORM when VIRTUAL was asked for but is unsupported
+	 */
+	public ExecutionMode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return the users tracked per second during the last cycle, 0 before the first one
+	 */
+	public double getLastCycleThroughput() {
+		return lastCycleThroughput;
+	}
+
+	/**
+	 * @return the current concurrency limit of CONTINUOUS scheduling
+	 */
+	public int getConcurrencyLimit() {
+		return concurrencyLimit.getLimit();
+	}
+
+	/**
+	 * @return how late the CONTINUOUS dispatcher was on its schedule at its last dispatch, in milliseconds
+	 */
+	public long getScheduleDelayMillis() {
+		return scheduleDelayMillis;
+	}
+
+	/**
+	 * CONTINUOUS scheduling: how late the user is on its deadline, its last tracking plus the polling interval.
+	 * Negative while the deadline is ahead, null if the tracker has not tracked the user yet.
+	 */
+	public Long getTrackingLagMillis(User user) {
+		Long trackedAt = lastTrackedAt.get(user.getUserId());
+		return trackedAt == null ? null : System.currentTimeMillis() - trackedAt - trackingPollingInterval;
+	}
+
+	/**
+	 * @return the result of the last completed cycle, null before the first one
+	 */
+	public TrackerCycleResult getLastCycleResult() {
+		return lastCycleResult;
+	}
+
 	@Override
 	public void run() {
-		StopWatch stopWatch = new StopWatch();
+		if(scheduling == TrackerScheduling.CONTINUOUS) {
+			runContinuously();
+			return;
+		}
 		while(true) {
 			if(Thread.currentThread().isInterrupted() || stop) {
 				logger.debug("Tracker stopping");
 				break;
 			}
-			
-			List<User> users = tourGuideService.getAllUsers();
-			logger.debug("Begin Tracker. Tracking " + users.size() + " users.");
-			stopWatch.start();
 
-			ForkJoinPool forkJoinPool = new ForkJoinPool(100);
-			//final ForkJoinPool test = new ForkJoinPool(1,	ForkJoinPool.defaultForkJoinWorkerThreadFactory, null,true);
+			long cycleStart = System.currentTimeMillis();
+			TrackerCycleResult result;
+			try {
+				result = trackPartitions(tourGuideService.getUserPartitions());
+			} catch (InterruptedException e) {
+				break;
+			}
 
-			users.forEach((user)-> {
-				CompletableFuture
-						.runAsync(()->tourGuideService.trackUserLocation(user), forkJoinPool)
-						.thenAccept(unused->rewardsService.calculateRewards(user));
-			});
+			try {
+				tourGuideService.refreshCurrentLocationsSnapshot();
+			} catch (IOException | RuntimeException e) {
+				logger.error("Current locations snapshot refresh failed", e);
+			}
 
-			//Optional : in case you want to wait for the completion of track users and calculate rewards before Tracker sleeping
-			//Wait maximum between Timeout and forkJoinPool has finished tasks
-			forkJoinPool.awaitQuiescence(10,TimeUnit.MINUTES);
+			// A cycle that overruns the interval makes the tracker skip the slots it has eaten
+			// instead of starting the late cycles back to back
+			long elapsed = System.currentTimeMillis() - cycleStart;
+			long skippedCycles = trackingPollingInterval > 0 ? elapsed / trackingPollingInterval : 0;
+			lastCycleResult = new TrackerCycleResult(result.getCycle(), result.getStartedAt(), result.getUsersTracked(), result.getFailures(), result.getDurationMillis(), skippedCycles);
+			skippedCyclesCounter.increment(skippedCycles);
+			if(skippedCycles > 0) {
+				logger.warn("Tracker cycle overran the polling interval: " + lastCycleResult);
+			} else {
+				logger.debug("Tracker " + lastCycleResult);
+			}
 
-			stopWatch.stop();
-			logger.debug("Tracker Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."); 
-			stopWatch.reset();
 			try {
 				logger.debug("Tracker sleeping");
-				TimeUnit.SECONDS.sleep(trackingPollingInterval);
+				long nextCycleStart = cycleStart + (skippedCycles + 1) * trackingPollingInterval;
+				TimeUnit.MILLISECONDS.sleep(Math.max(0, nextCycleStart - System.currentTimeMillis()));
 			} catch (InterruptedException e) {
 				break;
 			}
+		}
+	}
+
+	/**
+	 * CONTINUOUS scheduling: sweeps the users once per polling interval, the k-th of n users being dispatched
+	 * k * interval / n after the start of the sweep, so that the GPS service gets a steady load.
+	 * When no slot is free the dispatcher falls behind its schedule; the concurrency limit is then raised,
+	 * and cut when too many users fail. A sweep that overruns the interval delays the next one.
+	 */
+	private void runContinuously() {
+		long intervalNanos = TimeUnit.MILLISECONDS.toNanos(trackingPollingInterval);
+		long nextAdjustment = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(adjustIntervalMillis);
+		long sweepStart = System.nanoTime();
+		try {
+			while(!stop && !Thread.currentThread().isInterrupted()) {
+				Date startedAt = new Date();
+				List<Collection<User>> partitions = tourGuideService.getUserPartitions();
+				int users = partitions.stream().mapToInt(Collection::size).sum();
+				long spacingNanos = users > 0 ? intervalNanos / users : intervalNanos;
+				Sweep sweep = new Sweep(cycle.incrementAndGet(), startedAt, sweepStart);
+				int dispatched = 0;
+				sweep:
+				for(Collection<User> partition : partitions) {
+					for(User user : partition) {
+						// Users added during the sweep wait for the next one
+						if(dispatched == users) {
+							break sweep;
+						}
+						long due = sweepStart + dispatched * spacingNanos;
+						sleepUntil(due);
+						if(!concurrencyLimit.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+							windowWaitedForSlot = true;
+							while(!concurrencyLimit.tryAcquire(adjustIntervalMillis, TimeUnit.MILLISECONDS)) {
+								nextAdjustment = adjustIfDue(nextAdjustment, due);
+							}
+						}
+						nextAdjustment = adjustIfDue(nextAdjustment, due);
+						dispatch(user, sweep);
+						dispatched++;
+					}
+				}
+				sweep.dispatchEnded();
+
+				try {
+					tourGuideService.refreshCurrentLocationsSnapshot();
+				} catch (IOException | RuntimeException e) {
+					logger.error("Current locations snapshot refresh failed", e);
+				}
+
+				sweepStart = Math.max(sweepStart + intervalNanos, System.nanoTime());
+				while(System.nanoTime() < sweepStart) {
+					sleepUntil(Math.min(sweepStart, nextAdjustment));
+					nextAdjustment = adjustIfDue(nextAdjustment, System.nanoTime());
+				}
+			}
+		} catch (InterruptedException | RejectedExecutionException e) {
+			logger.debug("Tracker stopping");
+		}
+	}
+
+	private void dispatch(User user, Sweep sweep) {
+		runningUsers.incrementAndGet();
+		// Before the pipeline starts: it may complete at once
+		sweep.userDispatched();
+		CompletableFuture<Void> pipeline;
+		try {
+			pipeline = trackUserAsync(user);
+		} catch (RejectedExecutionException e) {
+			runningUsers.decrementAndGet();
+			concurrencyLimit.release();
+			throw e;
+		}
+		pipeline.whenComplete((unused, e) -> {
+			runningUsers.decrementAndGet();
+			concurrencyLimit.release();
+			windowCompletions.incrementAndGet();
+			sweep.userCompleted(e == null);
+			if(e != null) {
+				windowFailures.incrementAndGet();
+				failuresCounter.increment();
+				logger.error("Tracking failed for user " + user.getUserName(), e);
+				return;
+			}
+			usersTrackedCounter.increment();
+			long now = System.currentTimeMillis();
+			Long previous = lastTrackedAt.put(user.getUserId(), now);
+			if(previous != null) {
+				lagTimer.record(Math.max(0, now - previous - trackingPollingInterval), TimeUnit.MILLISECONDS);
+			}
+		});
+	}
+
+	/**
+	 * AIMD step, once per adjustment interval: decrease when more than maxErrorRate of the users completed
+	 * in the interval failed, increase when the dispatcher lacked slots and fell behind its schedule by more
+	 * than half the lag target, which leaves the other half for the calls themselves
+	 */
+	private long adjustIfDue(long nextAdjustment, long due) {
+		long now = System.nanoTime();
+		long delayMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(now - due));
+		scheduleDelayMillis = delayMillis;
+		windowMaxDelayMillis = Math.max(windowMaxDelayMillis, delayMillis);
+		if(now < nextAdjustment) {
+			return nextAdjustment;
+		}
+		int completions = windowCompletions.getAndSet(0);
+		int failures = windowFailures.getAndSet(0);
+		if(completions > 0 && failures > completions * maxErrorRate) {
+			concurrencyLimit.decrease();
+			logger.debug("Tracker concurrency limit decreased to " + concurrencyLimit.getLimit() + " after " + failures + " failures out of " + completions);
+		} else if(windowWaitedForSlot && windowMaxDelayMillis > lagTargetMillis / 2) {
+			concurrencyLimit.increase();
+			logger.debug("Tracker concurrency limit increased to " + concurrencyLimit.getLimit() + ", " + windowMaxDelayMillis + " ms behind schedule");
+		}
+		windowWaitedForSlot = false;
+		windowMaxDelayMillis = 0;
+		return now + TimeUnit.MILLISECONDS.toNanos(adjustIntervalMillis);
+	}
+
+	private static void sleepUntil(long nanoTime) throws InterruptedException {
+		long remaining = nanoTime - System.nanoTime();
+		if(remaining > 0) {
+			TimeUnit.NANOSECONDS.sleep(remaining);
+		}
+	}
+
+	/**
+	 * Sets the result of a CONTINUOUS sweep once every user it dispatched has completed, not when the dispatching
+	 * ends: a user still in flight is counted neither as tracked nor as failed
+	 */
+	private void sweepCompleted(TrackerCycleResult result) {
+		cycleTimer.record(result.getDurationMillis(), TimeUnit.MILLISECONDS);
+		synchronized(cycleResultLock) {
+			// The tail of a sweep can outlast the next sweep
+			if(lastCycleResult != null && lastCycleResult.getCycle() > result.getCycle()) {
+				return;
+			}
+			lastCycleResult = result;
+			lastCycleThroughput = result.getDurationMillis() > 0 ? result.getUsersTracked() * 1000.0 / result.getDurationMillis() : 0;
+		}
+		logger.debug("Tracker sweep " + result + ", concurrency limit " + concurrencyLimit.getLimit());
+	}
+
+	/**
+	 * The track-and-reward task of one user in the tracker mode: a non-blocking pipeline in ASYNC mode,
+	 * the blocking calls on a worker or a virtual thread otherwise
+	 */
+	private CompletableFuture<Void> trackUserAsync(User user) {
+		if(mode == ExecutionMode.ASYNC) {
+			try {
+				return tourGuideService.trackUserLocationAsync(user)
+						.thenCompose(visitedLocation -> rewardsService.calculateRewardsAsync(user));
+			} catch (RuntimeException e) {
+				CompletableFuture<Void> failure = new CompletableFuture<>();
+				failure.completeExceptionally(e);
+				return failure;
+			}
+		}
+		if(mode == ExecutionMode.VIRTUAL) {
+			return CompletableFuture.runAsync(() -> {
+				tourGuideService.trackUserLocation(user);
+				rewardsService.calculateRewards(user);
+			}, virtualWorkers);
+		}
+		// A WorkerTask, so that a user still queued at shutdown completes too
+		CompletableFuture<Void> pipeline = new CompletableFuture<>();
+		workers.execute(new WorkerTask(() -> {
+			try {
+				tourGuideService.trackUserLocation(user);
+				rewardsService.calculateRewards(user);
+				pipeline.complete(null);
+			} catch (RuntimeException e) {
+				pipeline.completeExceptionally(e);
+			}
+		}, () -> pipeline.completeExceptionally(new CancellationException("Tracker shut down before tracking user " + user.getUserName()))));
+		return pipeline;
+	}
 
-			/*
-			//Optional : in case we want to be sure that the completion of the tasks have been done in the trackingPollingInterval
-			boolean result = forkJoinPool.awaitQuiescence(1,TimeUnit.MINUTES);
-			if(result) {
-				logger.debug("Tracking done in trackingPollingInterval");
+	/**
+	 * Tracks the location then calculates the rewards of every user, and waits for all of them
+	 */
+	public TrackerCycleResult trackUsers(Collection<User> users) throws InterruptedException {
+		return trackPartitions(Collections.singletonList(users));
+	}
+
+	/**
+	 * Same as trackUsers, the users being submitted partition after partition. Partitions can be live views
+	 * of the user registry: users are counted while submitted, so the partitions may change meanwhile.
+	 */
+	public TrackerCycleResult trackPartitions(List<? extends Collection<User>> partitions) throws InterruptedException {
+		StopWatch stopWatch = new StopWatch();
+		Date startedAt = new Date();
+		logger.debug("Begin Tracker. Tracking " + partitions.size() + " partitions in " + mode + " mode.");
+		stopWatch.start();
+
+		// One permit released per user done
+		Semaphore completed = new Semaphore(0);
+		AtomicInteger failures = new AtomicInteger();
+		int submitted = 0;
+		for(Collection<User> users : partitions) {
+			if(mode == ExecutionMode.ASYNC) {
+				submitted += submitAsync(users, completed, failures);
+			} else if(mode == ExecutionMode.VIRTUAL) {
+				submitted += submitToVirtualThreads(users, completed, failures);
 			} else {
-				logger.debug("Warning : Tracking last more than trackingPollingInterval ");
+				submitted += submitToWorkers(users, completed, failures);
+			}
+		}
+		completed.acquire(submitted);
+
+		stopWatch.stop();
+		TrackerCycleResult result = new TrackerCycleResult(cycle.incrementAndGet(), startedAt, submitted - failures.get(), failures.get(), stopWatch.getTime(), 0);
+		cycleTimer.record(result.getDurationMillis(), TimeUnit.MILLISECONDS);
+		usersTrackedCounter.increment(result.getUsersTracked());
+		failuresCounter.increment(result.getFailures());
+		lastCycleThroughput = result.getDurationMillis() > 0 ? result.getUsersTracked() * 1000.0 / result.getDurationMillis() : 0;
+		return result;
+	}
+
+	/**
+	 * One worker thread per user, blocked on each downstream call. Submission blocks while the queue is full.
+	 */
+	private int submitToWorkers(Collection<User> users, Semaphore completed, AtomicInteger failures) throws InterruptedException {
+		int submitted = 0;
+		for(User user : users) {
+			try {
+				workers.execute(new WorkerTask(() -> {
+					try {
+						trackUser(user, failures);
+					} finally {
+						completed.release();
+					}
+				}, () -> {
+					failures.incrementAndGet();
+					completed.release();
+				}));
+			} catch (RejectedExecutionException e) {
+				throw new InterruptedException("Tracker workers shut down");
+			}
+			submitted++;
+		}
+		return submitted;
+	}
+
+	/**
+	 * Same blocking code as PLATFORM mode, but each user gets its own virtual thread: a thread blocked on
+	 * a downstream call costs a few hundred bytes of heap instead of a platform stack.
+	 * Concurrency is bounded by maxInFlight, as in ASYNC mode.
+	 */
+	private int submitToVirtualThreads(Collection<User> users, Semaphore completed, AtomicInteger failures) throws InterruptedException {
+		int submitted = 0;
+		for(User user : users) {
+			inFlightPermits.acquire();
+			try {
+				virtualWorkers.execute(() -> {
+					try {
+						trackUser(user, failures);
+					} finally {
+						inFlightPermits.release();
+						completed.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				inFlightPermits.release();
+				throw new InterruptedException("Tracker virtual threads shut down");
+			}
+			submitted++;
+		}
+		return submitted;
+	}
+
+	private void trackUser(User user, AtomicInteger failures) {
+		runningUsers.incrementAndGet();
+		try {
+			tourGuideService.trackUserLocation(user);
+			rewardsService.calculateRewards(user);
+		} catch (RuntimeException e) {
+			failures.incrementAndGet();
+			logger.error("Tracking failed for user " + user.getUserName(), e);
+		} finally {
+			runningUsers.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Composes each user's pipeline from non-blocking calls. Only this thread waits, for a permit,
+	 * so the number of users in flight is bounded by maxInFlight rather than by a thread count.
+	 */
+	private int submitAsync(Collection<User> users, Semaphore completed, AtomicInteger failures) throws InterruptedException {
+		int submitted = 0;
+		for(User user : users) {
+			inFlightPermits.acquire();
+			runningUsers.incrementAndGet();
+			trackUserAsync(user).whenComplete((unused, e) -> {
+				if(e != null) {
+					failures.incrementAndGet();
+					logger.error("Tracking failed for user " + user.getUserName(), e);
+				}
+				runningUsers.decrementAndGet();
+				inFlightPermits.release();
+				completed.release();
+			});
+			submitted++;
+		}
+		return submitted;
+	}
+
+	/**
+	 * A user tracked on a worker thread: every task given to the workers is one, so that shutdown can tell
+	 * the users it drains from the queue that they will not run
+	 */
+	private static class WorkerTask implements Runnable {
+		private final Runnable task;
+		private final Runnable onSkip;
+
+		private WorkerTask(Runnable task, Runnable onSkip) {
+			this.task = task;
+			this.onSkip = onSkip;
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+
+		private void skip() {
+			onSkip.run();
+		}
+	}
+
+	/**
+	 * The users of one CONTINUOUS sweep still in flight, the dispatcher counting as one until the sweep is dispatched
+	 */
+	private class Sweep {
+		private final long cycle;
+		private final Date startedAt;
+		private final long startNanos;
+		private final AtomicInteger pending = new AtomicInteger(1);
+		private final AtomicInteger tracked = new AtomicInteger();
+		private final AtomicInteger failures = new AtomicInteger();
+
+		private Sweep(long cycle, Date startedAt, long startNanos) {
+			this.cycle = cycle;
+			this.startedAt = startedAt;
+			this.startNanos = startNanos;
+		}
+
+		private void userDispatched() {
+			pending.incrementAndGet();
+		}
+
+		private void userCompleted(boolean success) {
+			(success ? tracked : failures).incrementAndGet();
+			release();
+		}
+
+		private void dispatchEnded() {
+			release();
+		}
+
+		private void release() {
+			if(pending.decrementAndGet() == 0) {
+				long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+				sweepCompleted(new TrackerCycleResult(cycle, startedAt, tracked.get(), failures.get(), durationMillis, 0));
 			}
-			*/
+		}
+	}
+
+	/**
+	 * Backpressure: instead of rejecting a task when the queue is full, the submitting thread waits for space.
+	 * The shutdown is checked while waiting and once queued: a task queued after shutdownNow drained the queue
+	 * would never run, and its user would never be counted as completed.
+	 */
+	private static void waitForQueueSpace(Runnable runnable, ThreadPoolExecutor executor) {
+		try {
+			do {
+				if(executor.isShutdown()) {
+					throw new RejectedExecutionException("Tracker workers shut down");
+				}
+			} while(!executor.getQueue().offer(runnable, 100, TimeUnit.MILLISECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for queue space", e);
+		}
+		if(executor.isShutdown() && executor.getQueue().remove(runnable)) {
+			throw new RejectedExecutionException("Tracker workers shut down");
 		}
 	}
 }
@@ -0,0 +1,57 @@
+package tourGuide.tracker;
+
+import java.util.Date;
+
+/**
+ * Outcome of one tracker cycle
+ */
+public class TrackerCycleResult {
+
+	private final long cycle;
+	private final Date startedAt;
+	private final int usersTracked;
+	private final int failures;
+	private final long durationMillis;
+	private final long skippedCycles;
+
+	public TrackerCycleResult(long cycle, Date startedAt, int usersTracked, int failures, long durationMillis, long skippedCycles) {
+		this.cycle = cycle;
+		this.startedAt = startedAt;
+		this.usersTracked = usersTracked;
+		this.failures = failures;
+		this.durationMillis = durationMillis;
+		this.skippedCycles = skippedCycles;
+	}
+
+	public long getCycle() {
+		return cycle;
+	}
+
+	public Date getStartedAt() {
+		return startedAt;
+	}
+
+	public int getUsersTracked() {
+		return usersTracked;
+	}
+
+	public int getFailures() {
+		return failures;
+	}
+
+	public long getDurationMillis() {
+		return durationMillis;
+	}
+
+	/**
+	 * @return number of following cycles skipped because this one overran the polling interval
+	 */
+	public long getSkippedCycles() {
+		return skippedCycles;
+	}
+
+	@Override
+	public String toString() {
+		return "cycle " + cycle + ": " + usersTracked + " users tracked, " + failures + " failures in " + durationMillis + " ms, " + skippedCycles + " cycles skipped";
+	}
+}
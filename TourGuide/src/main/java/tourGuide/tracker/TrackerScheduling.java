@@ -0,0 +1,12 @@
+package tourGuide.tracker;
+
+/**
+ * When the tracker tracks each user
+ */
+public enum TrackerScheduling {
+	/** Every user at once at the start of each polling interval, then sleep */
+	CYCLE,
+	/** Users dispatched one after the other, evenly spread over the polling interval, so that each one is
+	 * tracked once per interval; concurrency adapts to keep the tracking lag under its target */
+	CONTINUOUS
+}
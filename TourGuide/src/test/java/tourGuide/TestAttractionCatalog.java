@@ -0,0 +1,144 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+import tourGuide.service.AttractionCatalog;
+import tourGuide.service.AttractionSnapshot;
+
+public class TestAttractionCatalog {
+
+	private final Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595D, -117.922008D);
+	private final Attraction jacksonHole = new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767D, -110.821999D);
+
+	private AttractionCatalog newCatalog(DownstreamGateway downstreamGateway) throws InterruptedException {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getAttractions().setRefreshIntervalSeconds(0);
+		AttractionCatalog attractionCatalog = new AttractionCatalog(downstreamGateway, properties);
+		assertTrue(attractionCatalog.awaitFirstLoadAttempt(5, TimeUnit.SECONDS));
+		return attractionCatalog;
+	}
+
+	@Test
+	public void loadsAttractionsAtStartup() throws Exception {
+		// ARRANGE
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		when(downstreamGateway.getAttractions()).thenReturn(DownstreamResult.success(new ArrayList<>(Arrays.asList(disneyland, jacksonHole))));
+
+		// ACT
+		AttractionCatalog attractionCatalog = newCatalog(downstreamGateway);
+
+		// ASSERT
+		assertEquals(2, attractionCatalog.getAttractions().size());
+		assertEquals(1, attractionCatalog.getSnapshot().getVersion());
+	}
+
+	@Test
+	public void constructionDoesNotWaitForTheGpsService() throws Exception {
+		// ARRANGE
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		CountDownLatch gpsAnswers = new CountDownLatch(1);
+		when(downstreamGateway.getAttractions()).thenAnswer(invocation -> {
+			gpsAnswers.await();
+			return DownstreamResult.success(Arrays.asList(disneyland));
+		});
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getAttractions().setRefreshIntervalSeconds(0);
+
+		// ACT
+		AttractionCatalog attractionCatalog = new AttractionCatalog(downstreamGateway, properties);
+		boolean emptyWhileGpsIsSlow = attractionCatalog.getSnapshot().isEmpty();
+		gpsAnswers.countDown();
+		boolean attempted = attractionCatalog.awaitFirstLoadAttempt(5, TimeUnit.SECONDS);
+		attractionCatalog.shutdown();
+
+		// ASSERT
+		assertTrue(emptyWhileGpsIsSlow);
+		assertTrue(attempted);
+		assertEquals(1, attractionCatalog.getAttractions().size());
+	}
+
+	@Test
+	public void refreshSwapsSnapshotOnlyWhenContentChanges() throws Exception {
+		// ARRANGE
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		List<Attraction> first = Arrays.asList(disneyland);
+		List<Attraction> second = Arrays.asList(disneyland, jacksonHole);
+		// Same attraction moved: as many attractions, same names and ids
+		Attraction movedDisneyland = new Attraction(disneyland.attractionName, disneyland.city, disneyland.state, disneyland.latitude + 0.001D, disneyland.longitude);
+		movedDisneyland.attractionId = disneyland.attractionId;
+		List<Attraction> third = Arrays.asList(movedDisneyland, jacksonHole);
+		when(downstreamGateway.getAttractions())
+				.thenReturn(DownstreamResult.success(first))
+				.thenReturn(DownstreamResult.success(new ArrayList<>(first)))
+				.thenReturn(DownstreamResult.success(second))
+				.thenReturn(DownstreamResult.success(third))
+				.thenReturn(DownstreamResult.success(new ArrayList<>()))
+				.thenReturn(DownstreamResult.failure(DownstreamResult.Failure.TIMEOUT, "gps did not answer in time"));
+		AttractionCatalog attractionCatalog = newCatalog(downstreamGateway);
+		AttractionSnapshot initial = attractionCatalog.getSnapshot();
+
+		// ACT & ASSERT
+		assertFalse(attractionCatalog.refresh());
+		assertSame(initial, attractionCatalog.getSnapshot());
+
+		assertTrue(attractionCatalog.refresh());
+		assertEquals(2, attractionCatalog.getSnapshot().getVersion());
+		assertEquals(2, attractionCatalog.getAttractions().size());
+
+		assertTrue(attractionCatalog.refresh());
+		assertEquals(3, attractionCatalog.getSnapshot().getVersion());
+		assertEquals(movedDisneyland.latitude, attractionCatalog.getAttractions().get(0).latitude, 0D);
+
+		// An empty download keeps the previous snapshot
+		assertFalse(attractionCatalog.refresh());
+		assertEquals(2, attractionCatalog.getAttractions().size());
+
+		// And so does a failed one
+		assertFalse(attractionCatalog.refresh());
+		assertEquals(2, attractionCatalog.getAttractions().size());
+	}
+
+	@Test
+	public void failedFirstLoadIsRetriedUntilItSucceeds() throws Exception {
+		// ARRANGE
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		when(downstreamGateway.getAttractions())
+				.thenReturn(DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, "gps unreachable"))
+				.thenReturn(DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, "gps unreachable"))
+				.thenReturn(DownstreamResult.success(Arrays.asList(disneyland, jacksonHole)));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getAttractions().setFirstLoadRetryMillis(10);
+
+		// ACT
+		AttractionCatalog attractionCatalog = new AttractionCatalog(downstreamGateway, properties);
+		attractionCatalog.awaitFirstLoadAttempt(5, TimeUnit.SECONDS);
+		boolean emptyAfterFirstAttempt = attractionCatalog.getSnapshot().isEmpty();
+		long deadline = System.currentTimeMillis() + 5000;
+		while(attractionCatalog.getSnapshot().isEmpty() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		attractionCatalog.shutdown();
+
+		// ASSERT
+		assertTrue(emptyAfterFirstAttempt);
+		assertEquals(2, attractionCatalog.getAttractions().size());
+		assertEquals(1, attractionCatalog.getSnapshot().getVersion());
+	}
+}
@@ -0,0 +1,108 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.geo.AttractionDistance;
+import tourGuide.geo.AttractionIndex;
+import tourGuide.service.RewardsService;
+
+public class TestAttractionIndex {
+
+	private final RewardsService rewardsService = new RewardsService();
+
+	private List<Attraction> randomAttractions(Random random, int count) {
+		List<Attraction> attractions = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			attractions.add(new Attraction("attraction" + i, "city", "state", random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180));
+		}
+		return attractions;
+	}
+
+	@Test
+	public void withinRadiusMatchesFullScan() {
+		// ARRANGE
+		Random random = new Random(42);
+		List<Attraction> attractions = randomAttractions(random, 500);
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		for(int q = 0; q < 200; q++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			double radius = random.nextDouble() * 3000;
+
+			// ACT
+			Set<Attraction> actual = new HashSet<>(attractionIndex.withinRadius(location, radius));
+
+			// ASSERT
+			Set<Attraction> expected = attractions.stream()
+					.filter(attraction -> rewardsService.getDistance(attraction, location) <= radius)
+					.collect(Collectors.toSet());
+			assertEquals(expected, actual);
+		}
+	}
+
+	@Test
+	public void withinUnboundedRadiusReturnsAllAttractions() {
+		// ARRANGE
+		List<Attraction> attractions = randomAttractions(new Random(7), 26);
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		// ACT & ASSERT
+		assertEquals(26, attractionIndex.withinRadius(new Location(0, 0), Integer.MAX_VALUE).size());
+	}
+
+	@Test
+	public void nearestMatchesFullSort() {
+		// ARRANGE
+		Random random = new Random(1);
+		List<Attraction> attractions = randomAttractions(random, 300);
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		for(int q = 0; q < 200; q++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+
+			// ACT
+			List<AttractionDistance> actual = attractionIndex.nearest(location, 5);
+
+			// ASSERT
+			List<Attraction> expected = attractions.stream()
+					.sorted(Comparator.comparingDouble(attraction -> rewardsService.getDistance(attraction, location)))
+					.limit(5)
+					.collect(Collectors.toList());
+			assertEquals(5, actual.size());
+			for(int i = 0; i < 5; i++) {
+				assertEquals(expected.get(i), actual.get(i).attraction);
+				assertEquals(rewardsService.getDistance(expected.get(i), location), actual.get(i).distance, 1e-6);
+			}
+		}
+	}
+
+	@Test
+	public void nearestKeepsAttractionsAtEqualDistance() {
+		// ARRANGE
+		List<Attraction> attractions = new ArrayList<>();
+		attractions.add(new Attraction("north", "city", "state", 1, 0));
+		attractions.add(new Attraction("south", "city", "state", -1, 0));
+		attractions.add(new Attraction("east", "city", "state", 0, 1));
+		AttractionIndex attractionIndex = new AttractionIndex(attractions);
+
+		// ACT
+		List<AttractionDistance> actual = attractionIndex.nearest(new Location(0, 0), 5);
+
+		// ASSERT
+		assertEquals(3, actual.size());
+		assertTrue(actual.get(0).distance <= actual.get(2).distance);
+	}
+}
@@ -0,0 +1,180 @@
+package tourGuide;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jsoniter.output.JsonStream;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.service.CurrentLocationsSnapshot;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.store.CurrentLocationStore;
+
+public class TestCurrentLocationStore {
+
+	@Test
+	public void storeKeepsTheLatestLocationOfEachSlot() {
+		// ARRANGE
+		TourGuideProperties properties = new TourGuideProperties();
+		// Small segments so that the store has to grow, off heap to cover direct buffers
+		properties.getLocationStore().setSegmentSize(2);
+		properties.getLocationStore().setOffHeap(true);
+		CurrentLocationStore store = new CurrentLocationStore(properties);
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			User user = new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com");
+			user.attachCurrentLocationStore(store);
+			users.add(user);
+		}
+
+		// ACT
+		for(int i = 0; i < 4; i++) {
+			users.get(i).addToVisitedLocations(new VisitedLocation(users.get(i).getUserId(), new Location(i, -i), new Date(i)));
+			users.get(i).addToVisitedLocations(new VisitedLocation(users.get(i).getUserId(), new Location(10 + i, -10 - i), new Date(1000 + i)));
+		}
+		List<String> visited = new ArrayList<>();
+		store.forEach((slot, most, least, latitude, longitude, time) -> visited.add(slot + " " + new UUID(most, least) + " " + latitude + " " + longitude + " " + time));
+
+		// ASSERT: the fifth user has no location yet
+		assertEquals(5, store.size());
+		assertEquals(4, visited.size());
+		for(int i = 0; i < 4; i++) {
+			assertEquals(i, users.get(i).getCurrentLocationSlot());
+			assertEquals(i + " " + users.get(i).getUserId() + " " + (10.0 + i) + " " + (-10.0 - i) + " " + (1000 + i), visited.get(i));
+		}
+	}
+
+	@Test
+	public void readersNeverSeeASlotBeyondTheirSegments() throws Exception {
+		// ARRANGE
+		// One user per segment: every registration grows the segments
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getLocationStore().setSegmentSize(1);
+		CurrentLocationStore store = new CurrentLocationStore(properties);
+
+		// ACT
+		CompletableFuture<Void> registrations = CompletableFuture.runAsync(() -> {
+			for(int i = 0; i < 30000; i++) {
+				store.register(UUID.randomUUID());
+			}
+		});
+		List<CompletableFuture<Void>> readers = new ArrayList<>();
+		for(int i = 0; i < 3; i++) {
+			readers.add(CompletableFuture.runAsync(() -> {
+				while(!registrations.isDone()) {
+					// The last slot and the one being registered
+					store.forEach(Math.max(0, store.size() - 1), 2, (slot, most, least, latitude, longitude, time) -> { });
+				}
+			}));
+		}
+
+		// ASSERT
+		registrations.get(30, TimeUnit.SECONDS);
+		for(CompletableFuture<Void> reader : readers) {
+			reader.get(30, TimeUnit.SECONDS);
+		}
+		assertEquals(30000, store.size());
+	}
+
+	@Test
+	public void writeAllCurrentLocationsMatchesGetAllCurrentLocations() throws Exception {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(20);
+		TourGuideService tourGuideService = new TourGuideService(new RewardsService());
+		tourGuideService.tracker.stopTracking();
+		ObjectMapper mapper = new ObjectMapper();
+
+		// ACT
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		tourGuideService.writeAllCurrentLocations(outputStream);
+
+		// ASSERT
+		Map<?, ?> expected = mapper.readValue(JsonStream.serialize(tourGuideService.getAllCurrentLocations()), Map.class);
+		Map<?, ?> actual = mapper.readValue(outputStream.toByteArray(), Map.class);
+		assertEquals(20, actual.size());
+		assertEquals(expected, actual);
+	}
+
+	@Test
+	public void pagesOfCurrentLocationsCoverEveryUserOnce() throws Exception {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(25);
+		TourGuideService tourGuideService = new TourGuideService(new RewardsService());
+		tourGuideService.tracker.stopTracking();
+		ObjectMapper mapper = new ObjectMapper();
+		Map<Object, Object> pages = new HashMap<>();
+
+		// ACT
+		int slotCount = tourGuideService.getCurrentLocationSlotCount();
+		for(int cursor = 0; cursor < slotCount; cursor += 10) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			tourGuideService.writeCurrentLocations(outputStream, cursor, Math.min(slotCount, cursor + 10));
+			Map<?, ?> page = mapper.readValue(outputStream.toByteArray(), Map.class);
+			assertTrue(page.size() <= 10);
+			pages.putAll(page);
+		}
+
+		// ASSERT
+		Map<?, ?> expected = mapper.readValue(JsonStream.serialize(tourGuideService.getAllCurrentLocations()), Map.class);
+		assertEquals(25, slotCount);
+		assertEquals(expected, pages);
+	}
+
+	@Test
+	public void snapshotIsRebuiltOnlyWhenLocationsChange() throws Exception {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(5);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getLocationStore().setSnapshotMinRebuildIntervalMillis(0);
+		TourGuideService tourGuideService = new TourGuideService(new RewardsService(), properties);
+		tourGuideService.tracker.stopTracking();
+		User user = tourGuideService.getAllUsers().get(0);
+
+		// ACT
+		CurrentLocationsSnapshot first = tourGuideService.getCurrentLocationsSnapshot();
+		CurrentLocationsSnapshot unchanged = tourGuideService.getCurrentLocationsSnapshot();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(1, 2), new Date()));
+		CurrentLocationsSnapshot changed = tourGuideService.getCurrentLocationsSnapshot();
+		// Same users and version numbers after a restart
+		TourGuideService restarted = new TourGuideService(new RewardsService(), properties);
+		restarted.tracker.stopTracking();
+		CurrentLocationsSnapshot afterRestart = restarted.getCurrentLocationsSnapshot();
+
+		// ASSERT
+		assertSame(first, unchanged);
+		assertTrue(changed.getVersion() > first.getVersion());
+		assertTrue(changed.matches(changed.getETag(true)));
+		assertFalse(changed.matches(first.getETag(false)));
+		assertEquals(first.getVersion(), afterRestart.getVersion());
+		assertFalse(afterRestart.matches(first.getETag(false)));
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		tourGuideService.writeAllCurrentLocations(expected);
+		assertArrayEquals(expected.toByteArray(), changed.getJson());
+		try(GZIPInputStream gunzipped = new GZIPInputStream(new ByteArrayInputStream(changed.getGzippedJson()))) {
+			assertArrayEquals(changed.getJson(), gunzipped.readAllBytes());
+		}
+	}
+}
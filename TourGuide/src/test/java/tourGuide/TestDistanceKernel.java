@@ -0,0 +1,85 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.geo.DistanceKernel;
+
+public class TestDistanceKernel {
+
+	private List<Attraction> randomAttractions(Random random, int count) {
+		List<Attraction> attractions = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			attractions.add(new Attraction("attraction" + i, "city", "state", random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180));
+		}
+		return attractions;
+	}
+
+	@Test
+	public void distanceMatchesLawOfCosinesAndStaysPreciseAtShortRange() {
+		// ARRANGE
+		Location disneyland = new Location(33.817595D, -117.922008D);
+		Location jackson = new Location(43.582767D, -110.821999D);
+		// 0.00001 degree of latitude is about 0.00069 statute mile
+		Location nextDoor = new Location(33.817605D, -117.922008D);
+
+		// ACT
+		double longRange = DistanceKernel.distance(disneyland, jackson);
+		double shortRange = DistanceKernel.distance(disneyland, nextDoor);
+
+		// ASSERT
+		double lat1 = Math.toRadians(disneyland.latitude);
+		double lat2 = Math.toRadians(jackson.latitude);
+		double angle = Math.acos(Math.sin(lat1) * Math.sin(lat2) + Math.cos(lat1) * Math.cos(lat2) * Math.cos(Math.toRadians(disneyland.longitude - jackson.longitude)));
+		assertEquals(angle * DistanceKernel.STATUTE_MILES_PER_RADIAN, longRange, 1e-6);
+		assertEquals(Math.toRadians(0.00001D) * DistanceKernel.STATUTE_MILES_PER_RADIAN, shortRange, 1e-9);
+	}
+
+	@Test
+	public void batchQueriesMatchFullScan() {
+		// ARRANGE
+		Random random = new Random(3);
+		List<Attraction> attractions = randomAttractions(random, 200);
+		DistanceKernel kernel = new DistanceKernel(attractions);
+		int[] positions = new int[attractions.size()];
+		double[] miles = new double[attractions.size()];
+		double[] nearestMiles = new double[5];
+
+		for(int q = 0; q < 200; q++) {
+			Location location = new Location(random.nextDouble() * 170 - 85, random.nextDouble() * 360 - 180);
+			double radius = random.nextDouble() * 3000;
+			double[] expectedMiles = attractions.stream().mapToDouble(attraction -> DistanceKernel.distance(location, attraction)).toArray();
+
+			// ACT
+			kernel.distancesFrom(location, miles);
+			int withinCount = kernel.withinRadius(location, radius, positions);
+			int[] within = Arrays.copyOf(positions, withinCount);
+			int nearestCount = kernel.nearest(location, 5, positions, nearestMiles);
+
+			// ASSERT
+			for(int i = 0; i < attractions.size(); i++) {
+				assertEquals(expectedMiles[i], miles[i], 1e-9);
+			}
+			assertEquals(IntStream.range(0, attractions.size()).filter(i -> expectedMiles[i] <= radius).boxed().collect(Collectors.toSet()),
+					Arrays.stream(within).boxed().collect(Collectors.toSet()));
+			List<Integer> expectedNearest = IntStream.range(0, attractions.size()).boxed()
+					.sorted(Comparator.comparingDouble(i -> expectedMiles[i])).limit(5).collect(Collectors.toList());
+			assertEquals(5, nearestCount);
+			assertEquals(expectedNearest, Arrays.stream(Arrays.copyOf(positions, 5)).boxed().collect(Collectors.toList()));
+			for(int i = 0; i < 5; i++) {
+				assertEquals(expectedMiles[expectedNearest.get(i)], nearestMiles[i], 1e-9);
+			}
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.user.User;
+import tourGuide.gateway.DownstreamException;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+
+import utils.DownstreamStubServers;
+import utils.DownstreamStubServers.Latency;
+
+public class TestDownstreamGateway {
+
+	@Test
+	public void callsAreTimedByEndpointAndOutcome() throws Exception {
+		// ARRANGE
+		DownstreamStubServers.Settings settings = new DownstreamStubServers.Settings()
+				.endpoint(DownstreamStubServers.PRICE, Latency.none(), 1);
+		try (DownstreamStubServers stubs = new DownstreamStubServers(settings)) {
+			MeterRegistry meterRegistry = new SimpleMeterRegistry();
+			DownstreamGateway downstreamGateway = new DownstreamGateway(stubs.configure(new TourGuideProperties()), meterRegistry);
+			UUID userId = UUID.randomUUID();
+
+			// ACT
+			downstreamGateway.getUserLocation(userId);
+			downstreamGateway.getUserLocationAsync(userId).join();
+			downstreamGateway.getPrice("test-server-api-key", UUID.randomUUID(), 1, 0, 1, 0);
+
+			// ASSERT
+			assertEquals(2, meterRegistry.get("tourguide.downstream.requests").tags("endpoint", "getUserLocation", "outcome", "SUCCESS").timer().count());
+			assertEquals(1, meterRegistry.get("tourguide.downstream.requests").tags("endpoint", "getPrice", "outcome", "SERVER_ERROR").timer().count());
+			assertEquals(0, meterRegistry.get("tourguide.downstream.requests").tags("endpoint", "getPrice", "outcome", "SUCCESS").timer().count());
+		}
+	}
+
+	@Test
+	public void slowCallsTimeOutAndFailingServicesOpenTheirCircuit() throws Exception {
+		// ARRANGE
+		DownstreamStubServers.Settings settings = new DownstreamStubServers.Settings()
+				.endpoint(DownstreamStubServers.USER_LOCATION, Latency.fixed(500), 0)
+				.endpoint(DownstreamStubServers.PRICE, Latency.none(), 1);
+		try (DownstreamStubServers stubs = new DownstreamStubServers(settings)) {
+			TourGuideProperties properties = stubs.configure(new TourGuideProperties());
+			properties.getDownstream().getGps().setReadTimeoutMillis(100);
+			properties.getDownstream().getTripPricer().setCircuitWindowSize(4);
+			properties.getDownstream().getTripPricer().setCircuitMinimumCalls(4);
+			properties.getDownstream().getTripPricer().setCircuitOpenMillis(60000);
+			DownstreamGateway downstreamGateway = new DownstreamGateway(properties);
+
+			// ACT
+			DownstreamResult<?> location = downstreamGateway.getUserLocation(UUID.randomUUID());
+			for(int i = 0; i < 4; i++) {
+				assertEquals(DownstreamResult.Failure.SERVER_ERROR, downstreamGateway.getPrice("test-server-api-key", UUID.randomUUID(), 1, 0, 1, 0).getFailure());
+			}
+			DownstreamResult<?> price = downstreamGateway.getPrice("test-server-api-key", UUID.randomUUID(), 1, 0, 1, 0);
+
+			// ASSERT
+			assertEquals(DownstreamResult.Failure.TIMEOUT, location.getFailure());
+			assertEquals(DownstreamResult.Failure.CIRCUIT_OPEN, price.getFailure());
+			assertEquals(4, stubs.getRequests(DownstreamStubServers.PRICE));
+			// The other services are not affected
+			assertTrue(downstreamGateway.getAttractions().isSuccess());
+		}
+	}
+
+	@Test
+	public void failedTrackingStoresNoLocation() throws Exception {
+		// ARRANGE
+		DownstreamStubServers.Settings settings = new DownstreamStubServers.Settings()
+				.endpoint(DownstreamStubServers.USER_LOCATION, Latency.none(), 1);
+		try (DownstreamStubServers stubs = new DownstreamStubServers(settings)) {
+			TourGuideProperties properties = stubs.configure(new TourGuideProperties());
+			TourGuideService tourGuideService = new TourGuideService(new RewardsService(properties), properties);
+			tourGuideService.tracker.stopTracking();
+			User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+			// ACT
+			try {
+				tourGuideService.trackUserLocation(user);
+				fail("The GPS failure must not be hidden");
+			} catch (DownstreamException e) {
+				assertEquals(DownstreamResult.Failure.SERVER_ERROR, e.getFailure());
+			}
+			try {
+				tourGuideService.trackUserLocationAsync(user).join();
+				fail("The GPS failure must not be hidden");
+			} catch (CompletionException e) {
+				assertTrue(e.getCause() instanceof DownstreamException);
+			}
+			tourGuideService.tracker.shutdown();
+
+			// ASSERT
+			assertEquals(0, user.getVisitedLocations().size());
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.commons.lang3.time.StopWatch;
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.tripdeal.Provider;
+import tourGuide.domain.user.User;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+import tourGuide.helper.InternalTestHelper;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.tracker.TrackerCycleResult;
+
+import utils.DownstreamStubServers;
+import utils.DownstreamStubServers.Latency;
+
+public class TestDownstreamStubServers {
+
+	@Test
+	public void stubsServePayloadsLatenciesAndErrorsAsConfigured() throws Exception {
+		// ARRANGE
+		DownstreamStubServers.Settings settings = new DownstreamStubServers.Settings()
+				.attractionCount(500)
+				.providerCount(12)
+				.endpoint(DownstreamStubServers.USER_LOCATION, Latency.fixed(50), 0)
+				.endpoint(DownstreamStubServers.REWARD_POINTS, Latency.none(), 1);
+		try (DownstreamStubServers stubs = new DownstreamStubServers(settings)) {
+			DownstreamGateway downstreamGateway = new DownstreamGateway(stubs.configure(new TourGuideProperties()));
+			UUID userId = UUID.randomUUID();
+
+			// ACT
+			List<Attraction> attractions = downstreamGateway.getAttractions().getValue();
+			StopWatch stopWatch = new StopWatch();
+			stopWatch.start();
+			VisitedLocation visitedLocation = downstreamGateway.getUserLocation(userId).getValue();
+			stopWatch.stop();
+			DownstreamResult<Integer> rewardPoints = downstreamGateway.getRewardPoints(attractions.get(0).attractionId, userId);
+			List<Provider> providers = downstreamGateway.getPrice("test-server-api-key", attractions.get(0).attractionId, 2, 1, 7, 100).getValue();
+
+			// ASSERT
+			assertEquals(500, attractions.size());
+			assertEquals(attractions.get(499).attractionId, downstreamGateway.getAttractions().getValue().get(499).attractionId);
+			assertEquals(userId, visitedLocation.userId);
+			assertTrue(stopWatch.getTime() >= 50);
+			assertEquals(DownstreamResult.Failure.SERVER_ERROR, rewardPoints.getFailure());
+			assertEquals(1, stubs.getErrors(DownstreamStubServers.REWARD_POINTS));
+			assertEquals(12, providers.size());
+		}
+	}
+
+	@Test
+	public void trackerRunsEndToEndAgainstTheStubs() throws Exception {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(200);
+		DownstreamStubServers.Settings settings = new DownstreamStubServers.Settings()
+				.allEndpoints(Latency.logNormal(2, 20), 0);
+		try (DownstreamStubServers stubs = new DownstreamStubServers(settings)) {
+			TourGuideProperties properties = stubs.configure(new TourGuideProperties());
+			RewardsService rewardsService = new RewardsService(properties);
+			TourGuideService tourGuideService = new TourGuideService(rewardsService, properties);
+			tourGuideService.tracker.stopTracking();
+			List<User> allUsers = tourGuideService.getAllUsers();
+			Attraction attraction = new DownstreamGateway(properties).getAttractions().getValue().get(0);
+			allUsers.forEach(user -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date())));
+
+			// ACT
+			TrackerCycleResult result = tourGuideService.tracker.trackUsers(allUsers);
+			tourGuideService.tracker.shutdown();
+
+			// ASSERT
+			assertEquals(200, result.getUsersTracked());
+			assertEquals(0, result.getFailures());
+			assertTrue(stubs.getRequests(DownstreamStubServers.USER_LOCATION) >= 200);
+			User user = allUsers.get(0);
+			assertEquals(DownstreamStubServers.expectedRewardPoints(attraction.attractionId, user.getUserId()),
+					user.getUserRewards().stream().filter(userReward -> userReward.attraction.attractionId.equals(attraction.attractionId)).findFirst().get().getRewardPoints());
+		}
+		InternalTestHelper.setInternalUserNumber(1);
+	}
+}
@@ -5,17 +5,21 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.time.StopWatch;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
 import org.junit.Ignore;
 import org.junit.Test;
 
 import org.mockito.Mockito;
 
+import tourGuide.configuration.TourGuideProperties;
 import tourGuide.domain.location.Attraction;
 import tourGuide.domain.location.Location;
 import tourGuide.domain.location.VisitedLocation;
@@ -24,7 +28,12 @@ import tourGuide.helper.InternalTestHelper;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
 import tourGuide.domain.user.User;
+import tourGuide.tracker.ExecutionMode;
+import tourGuide.tracker.Tracker;
+import tourGuide.tracker.TrackerCycleResult;
 
+import utils.DownstreamStubServers;
+import utils.DownstreamStubServers.Latency;
 import utils.TourGuideTestUtil;
 
 public class TestPerformance {
@@ -47,7 +56,37 @@ public class TestPerformance {
      *
      *     highVolumeGetRewards: 100,000 users within 20 minutes:
 	 *          assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
+	 *
+	 *     The users are tracked by the Tracker in the mode given by the tourguide.tracker.mode system property
+	 *     (PLATFORM by default, ASYNC or VIRTUAL), e.g. ./gradlew test -Dtourguide.tracker.mode=VIRTUAL
+	 *     Elapsed time, peak thread count and used heap are printed to compare the modes.
+	 *
+	 *     The GPS, Rewards and TripPricer services are in-process stubs (see DownstreamStubServers) unless
+	 *     -Dtourguide.downstream=live, which uses the services configured by default. The stubs answer after
+	 *     a log-normal delay given by -Dtourguide.stub.medianMillis and -Dtourguide.stub.p99Millis (0 and 0 by default)
+	 *     and fail at the rate given by -Dtourguide.stub.errorRate (0 by default).
 	 */
+
+	private static DownstreamStubServers stubs;
+
+	@BeforeClass
+	public static void startStubs() throws IOException {
+		if("live".equals(System.getProperty("tourguide.downstream"))) {
+			return;
+		}
+		double medianMillis = Double.parseDouble(System.getProperty("tourguide.stub.medianMillis", "0"));
+		double p99Millis = Double.parseDouble(System.getProperty("tourguide.stub.p99Millis", "0"));
+		double errorRate = Double.parseDouble(System.getProperty("tourguide.stub.errorRate", "0"));
+		Latency latency = medianMillis > 0 ? Latency.logNormal(medianMillis, Math.max(medianMillis, p99Millis)) : Latency.none();
+		stubs = new DownstreamStubServers(new DownstreamStubServers.Settings().allEndpoints(latency, errorRate));
+	}
+
+	@AfterClass
+	public static void stopStubs() {
+		if(stubs != null) {
+			stubs.close();
+		}
+	}
 	
 	//@Ignore
 	@Test
@@ -58,28 +97,24 @@ public class TestPerformance {
 		// ARRANGE
 		// Users should be incremented up to 100,000, and test finishes within 15 minutes
 		InternalTestHelper.setInternalUserNumber(100000);
-		RewardsService mockRewardsService = Mockito.spy(new RewardsService());
+		RewardsService mockRewardsService = Mockito.spy(new RewardsService(performanceProperties()));
 		doNothing().when(mockRewardsService).calculateRewards(any(User.class));
-		TourGuideService tourGuideService = new TourGuideService(mockRewardsService);
+		doReturn(CompletableFuture.completedFuture(null)).when(mockRewardsService).calculateRewardsAsync(any(User.class));
+		TourGuideService tourGuideService = new TourGuideService(mockRewardsService, performanceProperties());
 		tourGuideService.tracker.stopTracking();
 		List<User> allUsers = tourGuideService.getAllUsers();
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
 		// ACT
-		ForkJoinPool forkJoinPool = new ForkJoinPool(100);
-		allUsers.forEach((user)-> {
-			CompletableFuture
-					.runAsync(()->tourGuideService.trackUserLocation(user), forkJoinPool)
-					.thenAccept(unused->mockRewardsService.calculateRewards(user));
-		});
-		boolean result = forkJoinPool.awaitQuiescence(15,TimeUnit.MINUTES);
+		TrackerCycleResult result = trackUsers(tourGuideService.tracker, allUsers);
 		stopWatch.stop();
+		tourGuideService.tracker.shutdown();
 
 		// ASSERT
-		System.out.println("highVolumeTrackLocation: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
+		report("highVolumeTrackLocation", tourGuideService.tracker, stopWatch);
 		assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
-		assertTrue(result);
+		assertTrue(result.getUsersTracked() == allUsers.size());
 	}
 	
 	@Ignore
@@ -91,35 +126,34 @@ public class TestPerformance {
 		// ARRANGE
 		// Users should be incremented up to 100,000, and test finishes within 20 minutes
 		InternalTestHelper.setInternalUserNumber(1000);
-		RewardsService rewardsService = new RewardsService();
+		RewardsService rewardsService = new RewardsService(performanceProperties());
 		VisitedLocation visitedLocationRandom = new VisitedLocation(UUID.randomUUID(), new Location(TourGuideTestUtil.generateRandomLatitude(), TourGuideTestUtil.generateRandomLongitude()), TourGuideTestUtil.getRandomTime());
-		TourGuideService mockTourGuideService = Mockito.spy(new TourGuideService(rewardsService));
+		TourGuideService mockTourGuideService = Mockito.spy(new TourGuideService(rewardsService, performanceProperties()));
 		doReturn(visitedLocationRandom).when(mockTourGuideService).trackUserLocation(any(User.class));
+		doReturn(CompletableFuture.completedFuture(visitedLocationRandom)).when(mockTourGuideService).trackUserLocationAsync(any(User.class));
 		mockTourGuideService.tracker.stopTracking();
 		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595D, -117.922008D);
 		List<User> allUsers = mockTourGuideService.getAllUsers();
+		// The tracker must call the spy; its own background cycle is stopped before any user is handed to it
+		doReturn(new ArrayList<Collection<User>>()).when(mockTourGuideService).getUserPartitions();
+		Tracker tracker = new Tracker(mockTourGuideService, rewardsService, performanceProperties());
+		tracker.stopTracking();
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
 		// ACT
-		//DEBUT_VERSION_AMELIOREE
-		ForkJoinPool forkJoinPool = new ForkJoinPool(100);
-		allUsers.forEach((user)-> {
-			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date()));
-			CompletableFuture
-					.runAsync(()->mockTourGuideService.trackUserLocation(user), forkJoinPool)
-					.thenAccept(unused->rewardsService.calculateRewards(user));
-		});
-		boolean result = forkJoinPool.awaitQuiescence(20,TimeUnit.MINUTES);
+		allUsers.forEach(user -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), attraction, new Date())));
+		TrackerCycleResult result = trackUsers(tracker, allUsers);
 		stopWatch.stop();
+		tracker.shutdown();
 
 		// ASSERT
 		for(User user : allUsers) {
 			assertTrue(user.getUserRewards().size() > 0);
 		}
-		System.out.println("highVolumeGetRewards: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
+		report("highVolumeGetRewards", tracker, stopWatch);
 		assertTrue(TimeUnit.MINUTES.toSeconds(20) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
-		assertTrue(result);
+		assertTrue(result.getUsersTracked() == allUsers.size());
 	}
 
 	// New test added : highVolumeTrackLocationAndGetRewards in actual conditions
@@ -132,28 +166,44 @@ public class TestPerformance {
 		// ARRANGE
 		// Users should be incremented up to 100,000, and test finishes within 15 minutes
 		InternalTestHelper.setInternalUserNumber(1000);
-		RewardsService rewardsService = new RewardsService();
-		TourGuideService tourGuideService = new TourGuideService(rewardsService);
+		RewardsService rewardsService = new RewardsService(performanceProperties());
+		TourGuideService tourGuideService = new TourGuideService(rewardsService, performanceProperties());
 		tourGuideService.tracker.stopTracking();
 		List<User> allUsers = tourGuideService.getAllUsers();
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
-		ForkJoinPool forkJoinPool = new ForkJoinPool(100);
-
 		// ACT
-		allUsers.forEach((user)-> {
-			CompletableFuture
-					.runAsync(()->tourGuideService.trackUserLocation(user), forkJoinPool)
-					.thenAccept(unused->rewardsService.calculateRewards(user));
-		});
-		boolean result = forkJoinPool.awaitQuiescence(15,TimeUnit.MINUTES);
+		TrackerCycleResult result = trackUsers(tourGuideService.tracker, allUsers);
 		stopWatch.stop();
+		tourGuideService.tracker.shutdown();
 
 		// ASSERT
-		System.out.println("highVolumeTrackLocation: Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds.");
+		report("highVolumeTrackLocationAndGetRewards", tourGuideService.tracker, stopWatch);
 		assertTrue(TimeUnit.MINUTES.toSeconds(15) >= TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()));
-		assertTrue(result);
+		assertTrue(result.getUsersTracked() == allUsers.size());
+	}
+
+	private static TourGuideProperties performanceProperties() {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setMode(ExecutionMode.valueOf(System.getProperty("tourguide.tracker.mode", ExecutionMode.PLATFORM.name())));
+		return stubs == null ? properties : stubs.configure(properties);
+	}
+
+	private static TrackerCycleResult trackUsers(Tracker tracker, List<User> users) {
+		try {
+			return tracker.trackUsers(users);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void report(String test, Tracker tracker, StopWatch stopWatch) {
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println(test + " (" + tracker.getMode() + "): Time Elapsed: " + TimeUnit.MILLISECONDS.toSeconds(stopWatch.getTime()) + " seconds."
+				+ " Peak threads: " + ManagementFactory.getThreadMXBean().getPeakThreadCount() + "."
+				+ " Used heap: " + (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024) + " MB.");
 	}
 
 }
@@ -0,0 +1,255 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.gateway.DownstreamException;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
+import tourGuide.service.RewardPointsBatcher;
+
+import utils.RewardsServiceStub;
+
+public class TestRewardPointsBatcher {
+
+	private RewardPointsBatcher newBatcher(RewardsServiceStub stub, int maxBatchSize, long lingerMillis) {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getDownstream().setRewardsUrl(stub.getUrl());
+		properties.getDownstream().setHttpVersion("HTTP_1_1");
+		properties.getRewards().setBatchMaxSize(maxBatchSize);
+		properties.getRewards().setBatchLingerMillis(lingerMillis);
+		return new RewardPointsBatcher(new DownstreamGateway(properties), properties);
+	}
+
+	@Test
+	public void pairsSubmittedTogetherShareOneBatch() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(true)) {
+			// ARRANGE
+			RewardPointsBatcher rewardPointsBatcher = newBatcher(stub, 50, 1000);
+			UUID userId = UUID.randomUUID();
+			List<UUID> attractionIds = new ArrayList<>();
+			List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+
+			// ACT
+			for(int i = 0; i < 120; i++) {
+				UUID attractionId = UUID.randomUUID();
+				attractionIds.add(attractionId);
+				rewardPoints.add(rewardPointsBatcher.submit(attractionId, userId));
+			}
+			rewardPointsBatcher.flush();
+
+			// ASSERT
+			for(int i = 0; i < attractionIds.size(); i++) {
+				assertEquals(RewardsServiceStub.expectedRewardPoints(attractionIds.get(i), userId), (int) rewardPoints.get(i).join());
+			}
+			assertEquals(3, stub.getBatchRequests());
+			assertEquals(120, stub.getBatchedPairs());
+			assertEquals(0, stub.getSingleRequests());
+			rewardPointsBatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void lingerTimeSendsPartialBatch() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(true)) {
+			// ARRANGE
+			RewardPointsBatcher rewardPointsBatcher = newBatcher(stub, 100, 5);
+			UUID attractionId = UUID.randomUUID();
+			UUID userId = UUID.randomUUID();
+
+			// ACT
+			int rewardPoints = rewardPointsBatcher.submit(attractionId, userId).join();
+
+			// ASSERT
+			assertEquals(RewardsServiceStub.expectedRewardPoints(attractionId, userId), rewardPoints);
+			assertEquals(1, stub.getBatchRequests());
+			rewardPointsBatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void batchesBeyondMaxInFlightWaitForAnAnswer() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(true)) {
+			// ARRANGE
+			TourGuideProperties properties = new TourGuideProperties();
+			properties.getDownstream().setRewardsUrl(stub.getUrl());
+			properties.getDownstream().setHttpVersion("HTTP_1_1");
+			properties.getRewards().setBatchMaxSize(1);
+			properties.getRewards().setBatchMaxInFlight(1);
+			RewardPointsBatcher rewardPointsBatcher = new RewardPointsBatcher(new DownstreamGateway(properties), properties);
+			UUID userId = UUID.randomUUID();
+			List<UUID> attractionIds = new ArrayList<>();
+			List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+
+			// ACT
+			for(int i = 0; i < 20; i++) {
+				UUID attractionId = UUID.randomUUID();
+				attractionIds.add(attractionId);
+				rewardPoints.add(rewardPointsBatcher.submit(attractionId, userId));
+			}
+
+			// ASSERT
+			for(int i = 0; i < attractionIds.size(); i++) {
+				assertEquals(RewardsServiceStub.expectedRewardPoints(attractionIds.get(i), userId), (int) rewardPoints.get(i).join());
+			}
+			assertEquals(20, stub.getBatchRequests());
+			rewardPointsBatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void batchesAnsweredAtOnceAreSentWithoutNesting() throws Exception {
+		// ARRANGE
+		// The first batch hangs while thousands queue behind it, then every batch fails at once, as with an open circuit
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		CompletableFuture<int[]> firstBatch = new CompletableFuture<>();
+		when(downstreamGateway.getRewardPointsBatchAsync(anyList()))
+				.thenReturn(firstBatch)
+				.thenReturn(CompletableFuture.failedFuture(new IOException("Circuit open")));
+		when(downstreamGateway.getRewardPointsAsync(any(UUID.class), any(UUID.class)))
+				.thenReturn(CompletableFuture.completedFuture(DownstreamResult.success(10)));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getRewards().setBatchMaxSize(1);
+		properties.getRewards().setBatchMaxInFlight(1);
+		properties.getRewards().setBatchMaxWaiting(20000);
+		RewardPointsBatcher rewardPointsBatcher = new RewardPointsBatcher(downstreamGateway, properties);
+		List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+		for(int i = 0; i < 20000; i++) {
+			rewardPoints.add(rewardPointsBatcher.submit(UUID.randomUUID(), UUID.randomUUID()));
+		}
+
+		// ACT
+		firstBatch.completeExceptionally(new IOException("Timeout"));
+
+		// ASSERT
+		for(CompletableFuture<Integer> points : rewardPoints) {
+			assertTrue(points.isDone());
+		}
+		rewardPointsBatcher.shutdown();
+	}
+
+	@Test
+	public void batchesBeyondMaxWaitingFailAtOnce() {
+		// ARRANGE
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		when(downstreamGateway.getRewardPointsBatchAsync(anyList())).thenReturn(new CompletableFuture<>());
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getRewards().setBatchMaxSize(1);
+		properties.getRewards().setBatchMaxInFlight(1);
+		properties.getRewards().setBatchMaxWaiting(2);
+		RewardPointsBatcher rewardPointsBatcher = new RewardPointsBatcher(downstreamGateway, properties);
+		List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+
+		// ACT
+		for(int i = 0; i < 5; i++) {
+			rewardPoints.add(rewardPointsBatcher.submit(UUID.randomUUID(), UUID.randomUUID()));
+		}
+
+		// ASSERT: one batch in flight, two waiting, the last two refused
+		for(int i = 0; i < 3; i++) {
+			assertFalse(rewardPoints.get(i).isDone());
+		}
+		for(int i = 3; i < 5; i++) {
+			assertEquals(DownstreamResult.Failure.BULKHEAD_FULL, downstreamFailure(rewardPoints.get(i)).getFailure());
+		}
+		rewardPointsBatcher.shutdown();
+	}
+
+	@Test
+	public void failedBatchFailsItsRequestsWithoutPerPairRequests() {
+		// ARRANGE
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		when(downstreamGateway.getRewardPointsBatchAsync(anyList())).thenReturn(CompletableFuture.failedFuture(new IOException("Rewards service answered 503")));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getRewards().setBatchLingerMillis(1000);
+		RewardPointsBatcher rewardPointsBatcher = new RewardPointsBatcher(downstreamGateway, properties);
+		List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+
+		// ACT
+		for(int i = 0; i < 10; i++) {
+			rewardPoints.add(rewardPointsBatcher.submit(UUID.randomUUID(), UUID.randomUUID()));
+		}
+		rewardPointsBatcher.flush();
+
+		// ASSERT
+		for(CompletableFuture<Integer> points : rewardPoints) {
+			assertEquals(DownstreamResult.Failure.IO_ERROR, downstreamFailure(points).getFailure());
+		}
+		verify(downstreamGateway, never()).getRewardPointsAsync(any(UUID.class), any(UUID.class));
+		assertTrue(rewardPointsBatcher.isBatchSupported());
+		rewardPointsBatcher.shutdown();
+	}
+
+	private static DownstreamException downstreamFailure(CompletableFuture<Integer> rewardPoints) {
+		assertTrue(rewardPoints.isCompletedExceptionally());
+		try {
+			rewardPoints.join();
+		} catch (CompletionException e) {
+			return (DownstreamException) e.getCause();
+		}
+		throw new AssertionError("Not failed");
+	}
+
+	@Test
+	public void fallsBackToPerPairRequestsWithoutBatchEndpoint() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(false)) {
+			// ARRANGE
+			RewardPointsBatcher rewardPointsBatcher = newBatcher(stub, 10, 1000);
+			UUID userId = UUID.randomUUID();
+			List<UUID> attractionIds = new ArrayList<>();
+			List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+
+			// ACT
+			for(int i = 0; i < 10; i++) {
+				UUID attractionId = UUID.randomUUID();
+				attractionIds.add(attractionId);
+				rewardPoints.add(rewardPointsBatcher.submit(attractionId, userId));
+			}
+			int afterFallback = rewardPointsBatcher.submit(attractionIds.get(0), userId).join();
+
+			// ASSERT
+			for(int i = 0; i < attractionIds.size(); i++) {
+				assertEquals(RewardsServiceStub.expectedRewardPoints(attractionIds.get(i), userId), (int) rewardPoints.get(i).join());
+			}
+			assertEquals(RewardsServiceStub.expectedRewardPoints(attractionIds.get(0), userId), afterFallback);
+			assertFalse(rewardPointsBatcher.isBatchSupported());
+			assertEquals(11, stub.getSingleRequests());
+			rewardPointsBatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void batchingCanBeDisabled() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(true)) {
+			// ARRANGE
+			TourGuideProperties properties = new TourGuideProperties();
+			properties.getDownstream().setRewardsUrl(stub.getUrl());
+			properties.getRewards().setBatchEnabled(false);
+			RewardPointsBatcher rewardPointsBatcher = new RewardPointsBatcher(new DownstreamGateway(properties), properties);
+
+			// ACT
+			rewardPointsBatcher.submit(UUID.randomUUID(), UUID.randomUUID()).join();
+
+			// ASSERT
+			assertTrue(stub.getSingleRequests() == 1 && stub.getBatchRequests() == 0);
+			rewardPointsBatcher.shutdown();
+		}
+	}
+}
@@ -0,0 +1,69 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.service.RewardPointsBatcher;
+import tourGuide.service.RewardPointsCache;
+
+import utils.RewardsServiceStub;
+
+public class TestRewardPointsCache {
+
+	private RewardPointsCache newCache(RewardsServiceStub stub) {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getDownstream().setRewardsUrl(stub.getUrl());
+		properties.getRewards().setBatchLingerMillis(20);
+		return new RewardPointsCache(new RewardPointsBatcher(new DownstreamGateway(properties), properties), properties);
+	}
+
+	@Test
+	public void repeatedRequestsAreServedFromCache() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(true)) {
+			// ARRANGE
+			RewardPointsCache rewardPointsCache = newCache(stub);
+			UUID attractionId = UUID.randomUUID();
+			UUID userId = UUID.randomUUID();
+
+			// ACT
+			int first = rewardPointsCache.get(attractionId, userId).join();
+			int second = rewardPointsCache.get(attractionId, userId).join();
+
+			// ASSERT
+			assertEquals(first, second);
+			assertEquals(1, stub.getBatchedPairs());
+			assertEquals(1, rewardPointsCache.stats().hitCount());
+			assertEquals(1, rewardPointsCache.stats().missCount());
+		}
+	}
+
+	@Test
+	public void concurrentMissesShareOneDownstreamRequest() throws Exception {
+		try (RewardsServiceStub stub = new RewardsServiceStub(true)) {
+			// ARRANGE
+			RewardPointsCache rewardPointsCache = newCache(stub);
+			UUID attractionId = UUID.randomUUID();
+			UUID userId = UUID.randomUUID();
+			List<CompletableFuture<Integer>> rewardPoints = new ArrayList<>();
+
+			// ACT
+			for(int i = 0; i < 10; i++) {
+				rewardPoints.add(CompletableFuture.supplyAsync(() -> rewardPointsCache.get(attractionId, userId).join()));
+			}
+
+			// ASSERT
+			for(CompletableFuture<Integer> points : rewardPoints) {
+				assertEquals(RewardsServiceStub.expectedRewardPoints(attractionId, userId), (int) points.join());
+			}
+			assertEquals(1, stub.getBatchedPairs());
+		}
+	}
+}
@@ -1,16 +1,26 @@
 package tourGuide;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 ;
+import tourGuide.configuration.TourGuideProperties;
 import tourGuide.domain.location.Attraction;
 import tourGuide.domain.location.Location;
 import tourGuide.domain.location.VisitedLocation;
 import tourGuide.domain.user.UserReward;
+import tourGuide.gateway.DownstreamGateway;
+import tourGuide.gateway.DownstreamResult;
 import tourGuide.helper.InternalTestHelper;
+import tourGuide.service.AttractionCatalog;
+import tourGuide.service.RewardPointsBatcher;
+import tourGuide.service.RewardPointsCache;
 import tourGuide.service.RewardsService;
 import tourGuide.service.TourGuideService;
 import tourGuide.domain.user.User;
@@ -43,6 +53,66 @@ public class TestRewardsService {
 		assertEquals(1, userRewards.size());
 	}
 	
+	@Test
+	public void calculateRewardsOnlyEvaluatesNewLocations() {
+		//Added to fix NumberFormatException due to decimal number separator
+		Locale.setDefault(new Locale("en", "US"));
+
+		// ARRANGE
+		RewardsService rewardsService = new RewardsService();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595D, -117.922008D);
+		Attraction jacksonHole = new Attraction("Jackson Hole", "Jackson Hole", "WY", 43.582767D, -110.821999D);
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), disneyland, new Date()));
+		rewardsService.calculateRewards(user);
+
+		// ACT
+		rewardsService.setProximityBuffer(Integer.MAX_VALUE);
+		rewardsService.calculateRewards(user);
+		int rewardsWithoutNewLocation = user.getUserRewards().size();
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), jacksonHole, new Date()));
+		rewardsService.calculateRewards(user);
+
+		// ASSERT
+		assertEquals(1, rewardsWithoutNewLocation);
+		assertEquals(2, user.getRewardsWatermark());
+		assertEquals(26, user.getUserRewards().size());
+	}
+
+	@Test
+	public void locationsEvaluatedBeforeTheCatalogIsLoadedAreNotSkipped() throws Exception {
+		// ARRANGE
+		Attraction disneyland = new Attraction("Disneyland", "Anaheim", "CA", 33.817595D, -117.922008D);
+		DownstreamGateway downstreamGateway = mock(DownstreamGateway.class);
+		when(downstreamGateway.getAttractions())
+				.thenReturn(DownstreamResult.failure(DownstreamResult.Failure.IO_ERROR, "gps unreachable"))
+				.thenReturn(DownstreamResult.success(Arrays.asList(disneyland)));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getAttractions().setRefreshIntervalSeconds(0);
+		properties.getAttractions().setFirstLoadRetryMillis(0);
+		properties.getRewards().setBatchEnabled(false);
+		AttractionCatalog attractionCatalog = new AttractionCatalog(downstreamGateway, properties);
+		attractionCatalog.awaitFirstLoadAttempt(5, TimeUnit.SECONDS);
+		RewardsService rewardsService = new RewardsService(downstreamGateway, attractionCatalog,
+				new RewardPointsCache(new RewardPointsBatcher(downstreamGateway, properties), properties));
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+		when(downstreamGateway.getRewardPointsAsync(disneyland.attractionId, user.getUserId())).thenReturn(CompletableFuture.completedFuture(DownstreamResult.success(42)));
+		user.addToVisitedLocations(new VisitedLocation(user.getUserId(), disneyland, new Date()));
+
+		// ACT
+		rewardsService.calculateRewards(user);
+		int rewardsWithEmptyCatalog = user.getUserRewards().size();
+		attractionCatalog.refresh();
+		rewardsService.calculateRewards(user);
+
+		// ASSERT
+		assertEquals(0, rewardsWithEmptyCatalog);
+		assertEquals(1, user.getUserRewards().size());
+		assertEquals(42, user.getUserRewards().get(0).getRewardPoints());
+	}
+
 	@Test
 	public void isWithinAttractionProximity() {
 		// ARRANGE
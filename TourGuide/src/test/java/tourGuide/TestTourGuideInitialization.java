@@ -0,0 +1,98 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideInitialization;
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.helper.InternalTestHelper;
+
+public class TestTourGuideInitialization {
+
+	private TourGuideInitialization initialize(long seed, int historyLength) {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getInternalUsers().setSeed(seed);
+		properties.getInternalUsers().setHistoryLength(historyLength);
+		TourGuideInitialization init = new TourGuideInitialization(properties);
+		init.initializeInternalUsers();
+		return init;
+	}
+
+	@Test
+	public void sameSeedGeneratesSameUsers() {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(5000);
+
+		// ACT
+		TourGuideInitialization first = initialize(42, 5);
+		TourGuideInitialization second = initialize(42, 5);
+		TourGuideInitialization other = initialize(43, 5);
+
+		// ASSERT
+		assertEquals(5000, first.getInternalUserRegistry().size());
+		first.getInternalUserRegistry().forEach(user -> {
+			User twin = second.getInternalUserRegistry().getByName(user.getUserName());
+			assertEquals(user.getUserId(), twin.getUserId());
+			assertEquals(5, user.getVisitedLocations().size());
+			for(int i = 0; i < 5; i++) {
+				VisitedLocation visitedLocation = user.getVisitedLocations().get(i);
+				VisitedLocation twinLocation = twin.getVisitedLocations().get(i);
+				assertEquals(visitedLocation.location.latitude, twinLocation.location.latitude, 0);
+				assertEquals(visitedLocation.location.longitude, twinLocation.location.longitude, 0);
+				assertEquals(visitedLocation.timeVisited, twinLocation.timeVisited);
+			}
+		});
+		assertNotEquals(first.getInternalUserRegistry().getByName("internalUser0").getUserId(),
+				other.getInternalUserRegistry().getByName("internalUser0").getUserId());
+		InternalTestHelper.setInternalUserNumber(1);
+	}
+
+	@Test
+	public void visitTimesEndAtTheConfiguredHistoryEnd() {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(100);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getInternalUsers().setHistoryLength(5);
+		long historyEnd = properties.getInternalUsers().getHistoryEndMillis();
+
+		// ACT
+		TourGuideInitialization init = new TourGuideInitialization(properties);
+		init.initializeInternalUsers();
+
+		// ASSERT
+		init.getInternalUserRegistry().forEach(user -> user.getVisitedLocations().forEach(visitedLocation -> {
+			long time = visitedLocation.timeVisited.getTime();
+			assertTrue(time <= historyEnd && time > historyEnd - TimeUnit.DAYS.toMillis(30));
+		}));
+		InternalTestHelper.setInternalUserNumber(1);
+	}
+
+	@Test
+	public void usersGetTheHistoryPolicyOfTheirProperties() {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(10);
+		TourGuideProperties shortHistory = new TourGuideProperties();
+		shortHistory.getInternalUsers().setHistoryLength(5);
+		shortHistory.getHistory().setCapacity(3);
+		TourGuideProperties defaultHistory = new TourGuideProperties();
+		defaultHistory.getInternalUsers().setHistoryLength(5);
+
+		// ACT
+		TourGuideInitialization shortInit = new TourGuideInitialization(shortHistory);
+		shortInit.initializeInternalUsers();
+		TourGuideInitialization defaultInit = new TourGuideInitialization(defaultHistory);
+		defaultInit.initializeInternalUsers();
+
+		// ASSERT
+		assertEquals(3, shortInit.getInternalUserRegistry().getByName("internalUser0").getVisitedLocations().size());
+		assertEquals(5, defaultInit.getInternalUserRegistry().getByName("internalUser0").getVisitedLocations().size());
+		InternalTestHelper.setInternalUserNumber(1);
+	}
+}
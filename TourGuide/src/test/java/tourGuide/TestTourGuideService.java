@@ -74,6 +74,29 @@ public class TestTourGuideService {
 		assertEquals(allCurrentLocationsExpected, allCurrentLocationsActual);
 	}
 
+	@Test
+	public void getAllCurrentLocationsSkipsUsersWithoutLocation() {
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(0);
+		RewardsService rewardsService = new RewardsService();
+		TourGuideService tourGuideService = new TourGuideService(rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User tracked = new User(UUID.randomUUID(), "jon1", "001", "jon1@tourGuide.com");
+		User untracked = new User(UUID.randomUUID(), "jon2", "002", "jon2@tourGuide.com");
+		tourGuideService.addUser(tracked);
+		tourGuideService.addUser(untracked);
+		Location location = new Location(61.218887D, -149.877502D);
+		tracked.addToVisitedLocations(new VisitedLocation(tracked.getUserId(), location, new Date()));
+
+		// ACT
+		HashMap<String, Location> allCurrentLocations = tourGuideService.getAllCurrentLocations();
+
+		// ASSERT
+		assertEquals(1, allCurrentLocations.size());
+		assertEquals(location, allCurrentLocations.get(tracked.getUserId().toString()));
+	}
+
 	@Test
 	public void getUser() {
 		// ARRANGE
@@ -202,6 +225,31 @@ public class TestTourGuideService {
 		}
 	}
 
+	@Test
+	public void getNearbyAttractionsWithNumberOfAttractions() {
+		//Added to fix NumberFormatException due to decimal number separator
+		Locale.setDefault(new Locale("en", "US"));
+
+		// ARRANGE
+		InternalTestHelper.setInternalUserNumber(0);
+		RewardsService rewardsService = new RewardsService();
+		TourGuideService tourGuideService = new TourGuideService(rewardsService);
+		tourGuideService.tracker.stopTracking();
+
+		User user = new User(UUID.randomUUID(), "jon", "000", "jon@tourGuide.com");
+
+		VisitedLocation visitedLocation = new VisitedLocation(user.getUserId(), new Location(47.305969D, 71.710449D), new Date());
+
+		// ACT
+		List<NearbyAttraction> nearbyAttractionsActual = tourGuideService.getNearByAttractions(visitedLocation, user, 8);
+
+		// ASSERT
+		assertEquals(8, nearbyAttractionsActual.size());
+		for (int j=1; j<8; j++) {
+			assertTrue(nearbyAttractionsActual.get(j-1).getDistanceAttractionUserLocation() <= nearbyAttractionsActual.get(j).getDistanceAttractionUserLocation());
+		}
+	}
+
 	@Test
 	public void getTripDeals() {
 		// ARRANGE
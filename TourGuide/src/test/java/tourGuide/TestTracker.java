@@ -0,0 +1,317 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.helper.VirtualThreads;
+import tourGuide.service.RewardsService;
+import tourGuide.service.TourGuideService;
+import tourGuide.tracker.ExecutionMode;
+import tourGuide.tracker.Tracker;
+import tourGuide.tracker.TrackerCycleResult;
+import tourGuide.tracker.TrackerScheduling;
+
+public class TestTracker {
+
+	@Test
+	public void trackUsersReportsTrackedUsersAndFailures() throws Exception {
+		// ARRANGE
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 50; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		User failingUser = users.get(0);
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		when(tourGuideService.getAllUsers()).thenReturn(new ArrayList<>());
+		doReturn(new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date())).when(tourGuideService).trackUserLocation(any(User.class));
+		doThrow(new IllegalStateException("GPS down")).when(tourGuideService).trackUserLocation(failingUser);
+		doNothing().when(rewardsService).calculateRewards(any(User.class));
+
+		// Small pool and queue so that submission has to wait for workers
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setPoolSize(2);
+		properties.getTracker().setQueueCapacity(3);
+		properties.getTracker().setPollingIntervalSeconds(3600);
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties);
+
+		// ACT
+		TrackerCycleResult result = tracker.trackUsers(users);
+		tracker.shutdown();
+
+		// ASSERT
+		assertEquals(49, result.getUsersTracked());
+		assertEquals(1, result.getFailures());
+	}
+
+	@Test
+	public void trackUsersInAsyncMode() throws Exception {
+		// ARRANGE
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 50; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		User failingUser = users.get(0);
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		when(tourGuideService.getAllUsers()).thenReturn(new ArrayList<>());
+		when(tourGuideService.trackUserLocationAsync(any(User.class))).thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date())));
+		CompletableFuture<VisitedLocation> failure = new CompletableFuture<>();
+		failure.completeExceptionally(new IllegalStateException("GPS down"));
+		when(tourGuideService.trackUserLocationAsync(failingUser)).thenReturn(failure);
+		when(rewardsService.calculateRewardsAsync(any(User.class))).thenReturn(CompletableFuture.completedFuture(null));
+
+		// Fewer permits than users so that the tracker has to wait for pipelines to complete
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setMode(ExecutionMode.ASYNC);
+		properties.getTracker().setMaxInFlight(4);
+		properties.getTracker().setPollingIntervalSeconds(3600);
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties);
+
+		// ACT
+		TrackerCycleResult result = tracker.trackUsers(users);
+		tracker.shutdown();
+
+		// ASSERT
+		assertEquals(49, result.getUsersTracked());
+		assertEquals(1, result.getFailures());
+	}
+
+	@Test
+	public void trackUsersInVirtualMode() throws Exception {
+		// ARRANGE
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 50; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		User failingUser = users.get(0);
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		when(tourGuideService.getAllUsers()).thenReturn(new ArrayList<>());
+		doReturn(new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date())).when(tourGuideService).trackUserLocation(any(User.class));
+		doThrow(new IllegalStateException("GPS down")).when(tourGuideService).trackUserLocation(failingUser);
+		doNothing().when(rewardsService).calculateRewards(any(User.class));
+
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setMode(ExecutionMode.VIRTUAL);
+		properties.getTracker().setMaxInFlight(4);
+		properties.getTracker().setPollingIntervalSeconds(3600);
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties);
+
+		// ACT
+		TrackerCycleResult result = tracker.trackUsers(users);
+		tracker.shutdown();
+
+		// ASSERT
+		// Without virtual threads (Java 11) the tracker runs the same users on its platform workers
+		assertEquals(VirtualThreads.isSupported() ? ExecutionMode.VIRTUAL : ExecutionMode.PLATFORM, tracker.getMode());
+		assertEquals(49, result.getUsersTracked());
+		assertEquals(1, result.getFailures());
+	}
+
+	@Test
+	public void trackUsersUpdatesTheTrackerMeters() throws Exception {
+		// ARRANGE
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 20; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		when(tourGuideService.getAllUsers()).thenReturn(new ArrayList<>());
+		doReturn(new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date())).when(tourGuideService).trackUserLocation(any(User.class));
+		doThrow(new IllegalStateException("GPS down")).when(tourGuideService).trackUserLocation(users.get(0));
+		doNothing().when(rewardsService).calculateRewards(any(User.class));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setPollingIntervalSeconds(3600);
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties, meterRegistry);
+
+		// ACT
+		tracker.trackUsers(users);
+		tracker.trackUsers(users);
+		tracker.shutdown();
+
+		// ASSERT
+		// The background cycle may also have run, over no users
+		assertTrue(meterRegistry.get("tourguide.tracker.cycle.duration").timer().count() >= 2);
+		assertEquals(38, meterRegistry.get("tourguide.tracker.users.tracked").counter().count(), 0);
+		assertEquals(2, meterRegistry.get("tourguide.tracker.failures").counter().count(), 0);
+		assertEquals(0, meterRegistry.get("tourguide.tracker.in.flight").gauge().value(), 0);
+		assertEquals(0, meterRegistry.get("tourguide.tracker.queue.depth").gauge().value(), 0);
+		assertEquals(tracker.getLastCycleThroughput(), meterRegistry.get("tourguide.tracker.users.per.second").gauge().value(), 0);
+	}
+
+	@Test
+	public void continuousSchedulingSpreadsUsersAndRaisesConcurrencyWhenBehind() throws Exception {
+		// ARRANGE
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 50; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		when(tourGuideService.getUserPartitions()).thenReturn(Collections.singletonList(users));
+		// 50 users of 100 ms each in a 1 s interval need at least 5 of them in flight
+		when(tourGuideService.trackUserLocation(any(User.class))).thenAnswer(invocation -> {
+			Thread.sleep(100);
+			return new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date());
+		});
+		doNothing().when(rewardsService).calculateRewards(any(User.class));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setScheduling(TrackerScheduling.CONTINUOUS);
+		properties.getTracker().setPollingIntervalSeconds(1);
+		properties.getTracker().setMinConcurrency(1);
+		properties.getTracker().setConcurrencyIncrement(2);
+		properties.getTracker().setLagTargetMillis(100);
+		properties.getTracker().setAdjustIntervalMillis(50);
+
+		// ACT
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties);
+		Thread.sleep(3500);
+		tracker.shutdown();
+
+		// ASSERT
+		assertTrue(tracker.getConcurrencyLimit() >= 5);
+		for(User user : users) {
+			assertNotNull(tracker.getTrackingLagMillis(user));
+		}
+		assertTrue(tracker.getLastCycleResult().getCycle() >= 2);
+	}
+
+	@Test
+	public void shutdownDuringACycleCompletesTheQueuedUsers() throws Exception {
+		// ARRANGE
+		// Every user submitted: two running, three waiting in the queue when the tracker shuts down
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < 5; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		when(tourGuideService.getAllUsers()).thenReturn(new ArrayList<>());
+		doAnswer(invocation -> {
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date());
+		}).when(tourGuideService).trackUserLocation(any(User.class));
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setPoolSize(2);
+		properties.getTracker().setQueueCapacity(3);
+		properties.getTracker().setPollingIntervalSeconds(3600);
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties);
+		CompletableFuture<Void> cycle = CompletableFuture.runAsync(() -> {
+			try {
+				tracker.trackUsers(users);
+			} catch (InterruptedException e) {
+				// Submission stopped by the shutdown
+			}
+		});
+		Thread.sleep(200);
+
+		// ACT
+		tracker.shutdown();
+
+		// ASSERT
+		cycle.get(5, TimeUnit.SECONDS);
+		assertTrue(cycle.isDone());
+	}
+
+	private List<User> sleepingUsers(TourGuideService tourGuideService, int count, long sleepMillis) {
+		List<User> users = new ArrayList<>();
+		for(int i = 0; i < count; i++) {
+			users.add(new User(UUID.randomUUID(), "jon" + i, "000", "jon" + i + "@tourGuide.com"));
+		}
+		when(tourGuideService.getUserPartitions()).thenReturn(Collections.singletonList(users));
+		doAnswer(invocation -> {
+			try {
+				Thread.sleep(sleepMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new VisitedLocation(UUID.randomUUID(), new Location(0, 0), new Date());
+		}).when(tourGuideService).trackUserLocation(any(User.class));
+		return users;
+	}
+
+	@Test
+	public void continuousShutdownCompletesTheQueuedUsers() throws Exception {
+		// ARRANGE
+		// One user every 100 ms, a single worker and 4 slots: one user running and three queued after 600 ms
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		sleepingUsers(tourGuideService, 10, 1000);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setScheduling(TrackerScheduling.CONTINUOUS);
+		properties.getTracker().setMode(ExecutionMode.PLATFORM);
+		properties.getTracker().setPollingIntervalSeconds(1);
+		properties.getTracker().setPoolSize(1);
+		properties.getTracker().setMinConcurrency(4);
+		MeterRegistry meterRegistry = new SimpleMeterRegistry();
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties, meterRegistry);
+		Thread.sleep(600);
+
+		// ACT
+		tracker.shutdown();
+
+		// ASSERT
+		assertEquals(3, meterRegistry.get("tourguide.tracker.failures").counter().count(), 0);
+	}
+
+	@Test
+	public void continuousSweepResultWaitsForItsUsers() throws Exception {
+		// ARRANGE
+		// The 5 users are dispatched within 1 s and each takes 2 s
+		TourGuideService tourGuideService = mock(TourGuideService.class);
+		RewardsService rewardsService = mock(RewardsService.class);
+		sleepingUsers(tourGuideService, 5, 2000);
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getTracker().setScheduling(TrackerScheduling.CONTINUOUS);
+		properties.getTracker().setMode(ExecutionMode.PLATFORM);
+		properties.getTracker().setPollingIntervalSeconds(1);
+		properties.getTracker().setPoolSize(5);
+		properties.getTracker().setMinConcurrency(5);
+
+		// ACT
+		Tracker tracker = new Tracker(tourGuideService, rewardsService, properties);
+		Thread.sleep(1300);
+		TrackerCycleResult whileInFlight = tracker.getLastCycleResult();
+		Thread.sleep(2000);
+		TrackerCycleResult afterCompletion = tracker.getLastCycleResult();
+		tracker.shutdown();
+
+		// ASSERT
+		assertNull(whileInFlight);
+		assertEquals(1, afterCompletion.getCycle());
+		assertEquals(5, afterCompletion.getUsersTracked());
+		assertEquals(0, afterCompletion.getFailures());
+	}
+}
@@ -0,0 +1,127 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.UserPreferences;
+import tourGuide.domain.user.UserReward;
+import tourGuide.store.UserJournal;
+import tourGuide.store.UserRegistry;
+
+public class TestUserJournal {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TourGuideProperties journalProperties() {
+		TourGuideProperties properties = new TourGuideProperties();
+		properties.getJournal().setEnabled(true);
+		properties.getJournal().setDirectory(folder.getRoot().getPath());
+		properties.getJournal().setSegmentSizeMb(1);
+		properties.getJournal().setCheckpointIntervalMinutes(0);
+		return properties;
+	}
+
+	private User addUser(UserJournal userJournal, UserRegistry userRegistry, String userName) {
+		User user = new User(UUID.randomUUID(), userName, "000", userName + "@tourGuide.com");
+		userRegistry.addIfAbsent(user);
+		userJournal.register(user);
+		return user;
+	}
+
+	private void visit(User user, int count) {
+		for(int i = 0; i < count; i++) {
+			user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(33.8 + i * 0.001, -117.9), new Date(1000L * user.getVisitedLocationSequence())));
+		}
+	}
+
+	private UserRegistry reopen() {
+		UserRegistry userRegistry = new UserRegistry();
+		UserJournal userJournal = new UserJournal(journalProperties());
+		userJournal.open(userRegistry);
+		userJournal.close();
+		return userRegistry;
+	}
+
+	@Test
+	public void replayRestoresUsersLocationsRewardsAndPreferences() {
+		// ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		UserJournal userJournal = new UserJournal(journalProperties());
+		userJournal.open(userRegistry);
+		User jon = addUser(userJournal, userRegistry, "jon");
+		User jon2 = addUser(userJournal, userRegistry, "jon2");
+		visit(jon, 3);
+		jon2.addToVisitedLocations(new VisitedLocation(jon2.getUserId(), null, null));
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		jon.addUserReward(new UserReward(jon.getLastVisitedLocation(), attraction, 250));
+		UserPreferences userPreferences = new UserPreferences();
+		userPreferences.setTripDuration(7);
+		userPreferences.setHighPricePoint(null);
+		jon.setUserPreferences(userPreferences);
+
+		// ACT
+		userJournal.sync();
+		userJournal.close();
+		UserRegistry restored = reopen();
+
+		// ASSERT
+		assertEquals(2, restored.size());
+		User restoredJon = restored.getById(jon.getUserId());
+		assertEquals("jon@tourGuide.com", restoredJon.getEmailAddress());
+		assertEquals(3, restoredJon.getVisitedLocations().size());
+		assertEquals(jon.getLastVisitedLocation().location.latitude, restoredJon.getLastVisitedLocation().location.latitude, 0);
+		assertEquals(jon.getLastVisitedLocation().timeVisited, restoredJon.getLastVisitedLocation().timeVisited);
+		UserReward restoredReward = restoredJon.getUserRewards().get(0);
+		assertEquals(attraction.attractionId, restoredReward.attraction.attractionId);
+		assertEquals("Disneyland", restoredReward.attraction.attractionName);
+		assertEquals(250, restoredReward.getRewardPoints());
+		assertEquals(7, restoredJon.getUserPreferences().getTripDuration());
+		assertNull(restoredJon.getUserPreferences().getHighPricePoint());
+		assertNull(restored.getByName("jon2").getLastVisitedLocation().location);
+	}
+
+	@Test
+	public void checkpointReplacesOlderSegmentsWithoutDuplicatingLocations() {
+		// ARRANGE
+		UserRegistry userRegistry = new UserRegistry();
+		UserJournal userJournal = new UserJournal(journalProperties());
+		userJournal.open(userRegistry);
+		User jon = addUser(userJournal, userRegistry, "jon");
+		// 20 000 records of 57 bytes: the 1 MB segment rolls
+		visit(jon, 20000);
+
+		// ACT
+		assertTrue(userJournal.checkpoint());
+		visit(jon, 5);
+		userJournal.close();
+		UserRegistry restored = reopen();
+
+		// ASSERT
+		List<String> files = Arrays.asList(folder.getRoot().list());
+		assertEquals(files.toString(), 1, files.stream().filter(name -> name.startsWith("checkpoint-")).count());
+		assertEquals(files.toString(), 1, files.stream().filter(name -> name.startsWith("segment-")).count());
+		User restoredJon = restored.getById(jon.getUserId());
+		List<VisitedLocation> expected = jon.getVisitedLocations();
+		List<VisitedLocation> actual = restoredJon.getVisitedLocations();
+		assertEquals(expected.size(), actual.size());
+		for(int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).timeVisited, actual.get(i).timeVisited);
+		}
+	}
+}
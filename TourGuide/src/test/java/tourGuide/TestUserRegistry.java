@@ -0,0 +1,61 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+import tourGuide.domain.user.User;
+import tourGuide.store.UserRegistry;
+
+public class TestUserRegistry {
+
+	@Test
+	public void addIfAbsentKeepsTheFirstUserOfEachName() {
+		// ARRANGE
+		UserRegistry userRegistry = new UserRegistry(4);
+		AtomicInteger added = new AtomicInteger();
+
+		// ACT: each name is added concurrently by eight threads
+		IntStream.range(0, 8000).parallel().forEach(i -> {
+			if(userRegistry.addIfAbsent(new User(UUID.randomUUID(), "jon" + (i % 1000), "000", "jon@tourGuide.com"))) {
+				added.incrementAndGet();
+			}
+		});
+
+		// ASSERT
+		assertEquals(1000, added.get());
+		assertEquals(1000, userRegistry.size());
+		User user = userRegistry.getByName("jon7");
+		assertSame(user, userRegistry.getById(user.getUserId()));
+		assertFalse(userRegistry.addIfAbsent(new User(UUID.randomUUID(), "jon7", "000", "jon@tourGuide.com")));
+	}
+
+	@Test
+	public void partitionsAndSpliteratorCoverEveryUserOnce() {
+		// ARRANGE
+		UserRegistry userRegistry = new UserRegistry(16);
+		IntStream.range(0, 5000).forEach(i -> userRegistry.addIfAbsent(new User(UUID.randomUUID(), "jon" + i, "000", "jon@tourGuide.com")));
+
+		// ACT
+		int partitioned = userRegistry.partitions().stream().mapToInt(Collection::size).sum();
+		Set<String> streamed = userRegistry.parallelStream().map(User::getUserName).collect(Collectors.toSet());
+		long counted = userRegistry.parallelStream().count();
+
+		// ASSERT
+		assertEquals(16, userRegistry.partitions().size());
+		assertTrue(userRegistry.partitions().stream().noneMatch(Collection::isEmpty));
+		assertEquals(5000, partitioned);
+		assertEquals(5000, streamed.size());
+		assertEquals(5000, counted);
+	}
+}
@@ -0,0 +1,68 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import tourGuide.configuration.TourGuideProperties;
+import tourGuide.domain.location.Attraction;
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.User;
+import tourGuide.domain.user.UserReward;
+import tourGuide.store.UserRegistry;
+import tourGuide.store.UserSnapshot;
+
+public class TestUserSnapshot {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void saveAndLoadRestoreEveryUserAcrossChunks() throws IOException {
+		// ARRANGE
+		TourGuideProperties properties = new TourGuideProperties();
+		File file = new File(folder.getRoot(), "users.snapshot");
+		properties.getSnapshot().setPath(file.getPath());
+		properties.getSnapshot().setChunkUsers(1000);
+		properties.getSnapshot().setParallelism(4);
+		UserSnapshot userSnapshot = new UserSnapshot(properties);
+		UserRegistry userRegistry = new UserRegistry();
+		Attraction attraction = new Attraction("Disneyland", "Anaheim", "CA", 33.817595, -117.922008);
+		IntStream.range(0, 25000).forEach(i -> {
+			User user = new User(UUID.randomUUID(), "internalUser" + i, "000", "internalUser" + i + "@tourGuide.com");
+			IntStream.range(0, 3).forEach(j -> user.addToVisitedLocations(new VisitedLocation(user.getUserId(), new Location(i % 80, j), new Date(i * 1000L + j))));
+			user.addUserReward(new UserReward(user.getLastVisitedLocation(), attraction, i));
+			userRegistry.addIfAbsent(user);
+		});
+
+		// ACT
+		long saved = userSnapshot.save(userRegistry);
+		UserRegistry restored = new UserRegistry();
+		int loaded = userSnapshot.loadIfPresent(restored);
+
+		// ASSERT
+		assertEquals(25000, saved);
+		assertEquals(25000, loaded);
+		assertEquals(25000, restored.size());
+		assertFalse(new File(folder.getRoot(), "users.snapshot.tmp").exists());
+		User user = userRegistry.getByName("internalUser12345");
+		User restoredUser = restored.getById(user.getUserId());
+		assertEquals("internalUser12345", restoredUser.getUserName());
+		List<VisitedLocation> visitedLocations = restoredUser.getVisitedLocations();
+		assertEquals(3, visitedLocations.size());
+		assertEquals(12345 % 80, visitedLocations.get(2).location.latitude, 0);
+		assertEquals(new Date(12345 * 1000L + 2), visitedLocations.get(2).timeVisited);
+		assertEquals(12345, restoredUser.getUserRewards().get(0).getRewardPoints());
+	}
+}
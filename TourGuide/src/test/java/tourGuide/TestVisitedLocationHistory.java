@@ -0,0 +1,88 @@
+package tourGuide;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import tourGuide.domain.location.Location;
+import tourGuide.domain.location.VisitedLocation;
+import tourGuide.domain.user.VisitedLocationHistory;
+import tourGuide.domain.user.VisitedLocationHistory.Compaction;
+
+public class TestVisitedLocationHistory {
+
+	private final UUID userId = UUID.randomUUID();
+
+	private VisitedLocation visitedLocation(double latitude, long minutes) {
+		return new VisitedLocation(userId, new Location(latitude, 0), new Date(TimeUnit.MINUTES.toMillis(minutes)));
+	}
+
+	@Test
+	public void ringKeepsTheMostRecentLocations() {
+		// ARRANGE
+		VisitedLocationHistory history = new VisitedLocationHistory(new VisitedLocationHistory.Policy(3, Compaction.NONE, 0, 0));
+		List<VisitedLocation> added = new ArrayList<>();
+		assertNull(history.last());
+
+		// ACT
+		for(int i = 0; i < 5; i++) {
+			added.add(visitedLocation(i, i));
+			history.add(added.get(i));
+		}
+
+		// ASSERT
+		assertEquals(5, history.getSequence());
+		assertSame(added.get(4), history.last());
+		assertEquals(added.subList(2, 5), history.toList());
+		// Sequence numbers survive eviction: 0 and 1 are gone, 3 and 4 are still there
+		assertEquals(added.subList(2, 5), history.since(0));
+		assertEquals(added.subList(3, 5), history.since(3));
+		assertEquals(0, history.since(5).size());
+		assertEquals(0, history.compacted(userId).size());
+	}
+
+	@Test
+	public void evictedLocationsAreDownsampled() {
+		// ARRANGE
+		VisitedLocationHistory history = new VisitedLocationHistory(new VisitedLocationHistory.Policy(2, Compaction.DOWNSAMPLE, 10, TimeUnit.MINUTES.toMillis(60)));
+
+		// ACT: one location per minute during three hours
+		for(int i = 0; i < 180; i++) {
+			history.add(visitedLocation(i % 90, i));
+		}
+
+		// ASSERT
+		List<VisitedLocation> compacted = history.compacted(userId);
+		assertEquals(3, compacted.size());
+		assertEquals(0, compacted.get(0).timeVisited.getTime());
+		assertEquals(TimeUnit.MINUTES.toMillis(60), compacted.get(1).timeVisited.getTime());
+		assertEquals(2, history.size());
+	}
+
+	@Test
+	public void evictedLocationsAreDeduplicated() {
+		// ARRANGE
+		VisitedLocationHistory history = new VisitedLocationHistory(new VisitedLocationHistory.Policy(1, Compaction.DEDUPLICATE, 10, 0));
+
+		// ACT: the user stays at the same place, then moves once
+		for(int i = 0; i < 5; i++) {
+			history.add(visitedLocation(10, i));
+		}
+		history.add(visitedLocation(20, 5));
+		history.add(visitedLocation(20, 6));
+
+		// ASSERT
+		List<VisitedLocation> compacted = history.compacted(userId);
+		assertEquals(2, compacted.size());
+		assertEquals(10, compacted.get(0).location.latitude, 0);
+		assertEquals(20, compacted.get(1).location.latitude, 0);
+	}
+}
@@ -0,0 +1,45 @@
+package tourGuide.gateway;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+// In the gateway package: CircuitBreaker is package-private
+public class TestCircuitBreaker {
+
+	@Test
+	public void outcomeOfACallGrantedBeforeTheCircuitOpenedIsIgnored() {
+		// ARRANGE
+		// Two failures out of two open the circuit, which lets a trial call through at once
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, 2, 0.5, 0);
+		long slowCall = circuitBreaker.tryAcquirePermission();
+		circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+		long trialCall = circuitBreaker.tryAcquirePermission();
+
+		// ACT
+		circuitBreaker.onSuccess(slowCall);
+		CircuitBreaker.State afterStaleSuccess = circuitBreaker.getState();
+		long secondTrial = circuitBreaker.tryAcquirePermission();
+		circuitBreaker.onFailure(trialCall);
+
+		// ASSERT
+		assertEquals(CircuitBreaker.State.HALF_OPEN, afterStaleSuccess);
+		assertEquals(CircuitBreaker.NO_PERMISSION, secondTrial);
+		assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+	}
+
+	@Test
+	public void successfulTrialClosesTheCircuit() {
+		// ARRANGE
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, 2, 0.5, 0);
+		circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+		circuitBreaker.onFailure(circuitBreaker.tryAcquirePermission());
+
+		// ACT
+		circuitBreaker.onSuccess(circuitBreaker.tryAcquirePermission());
+
+		// ASSERT
+		assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+	}
+}
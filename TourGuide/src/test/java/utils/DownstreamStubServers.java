@@ -0,0 +1,439 @@
+package utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import tourGuide.configuration.TourGuideProperties;
+
+/**
+ * In-process stand-ins for the GPS, Rewards and TripPricer services, each listening on a free local port.
+ * Every endpoint has its own latency distribution and error rate (an error is an HTTP 500 with an empty body),
+ * and the number of attractions and of providers sets the payload sizes. The first attractions are those of the
+ * GPS service, the others are spread over the United States.
+ * Answers, delays and errors are drawn from a random seeded by the stub seed and the request itself,
+ * so that the same requests get the same answers from one run to the next. Reward points are a deterministic
+ * function of (attractionId, userId), see expectedRewardPoints, so that batched and per-pair answers can be compared.
+ * Delays are served from a scheduler, so that slow answers hold no thread while they wait.
+ */
+public class DownstreamStubServers implements AutoCloseable {
+
+	public static final String USER_LOCATION = "/getUserLocation";
+	public static final String ATTRACTIONS = "/getAttractions";
+	public static final String REWARD_POINTS = "/getRewardPoints";
+	public static final String REWARD_POINTS_BATCH = "/getRewardPointsBatch";
+	public static final String PRICE = "/getPrice";
+
+	// The attractions of the GPS service: name, city, state, latitude, longitude
+	private static final String[][] KNOWN_ATTRACTIONS = {
+		{ "Disneyland", "Anaheim", "CA", "33.817595", "-117.922008" },
+		{ "Jackson Hole", "Jackson Hole", "WY", "43.582767", "-110.821999" },
+		{ "Mojave National Preserve", "Kelso", "CA", "35.141689", "-115.510399" },
+		{ "Joshua Tree National Park", "Joshua Tree National Park", "CA", "33.881866", "-115.90065" },
+		{ "Buffalo National River", "St Joe", "AR", "35.985512", "-92.757652" },
+		{ "Hot Springs National Park", "Hot Springs", "AR", "34.52153", "-93.042267" },
+		{ "Kartchner Caverns State Park", "Benson", "AZ", "31.837551", "-110.347382" },
+		{ "Legend Valley", "Thornville", "OH", "39.937778", "-82.40667" },
+		{ "Flowers Bakery of London", "Flowers Bakery of London", "KY", "37.131527", "-84.07486" },
+		{ "McKinley Tower", "Anchorage", "AK", "61.218887", "-149.877502" },
+		{ "Flatiron Building", "New York City", "NY", "40.741112", "-73.989723" },
+		{ "Fallingwater", "Mill Run", "PA", "39.906113", "-79.468132" },
+		{ "Union Station", "Washington D.C.", "CA", "38.897095", "-77.006332" },
+		{ "Roger Dean Stadium", "Jupiter", "FL", "26.890959", "-80.116577" },
+		{ "Texas Memorial Stadium", "Austin", "TX", "30.283682", "-97.732536" },
+		{ "Bryant-Denny Stadium", "Tuscaloosa", "AL", "33.208973", "-87.550438" },
+		{ "Tiger Stadium", "Baton Rouge", "LA", "30.412035", "-91.183815" },
+		{ "Neyland Stadium", "Knoxville", "TN", "35.955013", "-83.925011" },
+		{ "Kyle Field", "College Station", "TX", "30.61025", "-96.339844" },
+		{ "San Diego Zoo", "San Diego", "CA", "32.735317", "-117.149048" },
+		{ "Zoo Tampa at Lowry Park", "Tampa", "FL", "28.012804", "-82.469269" },
+		{ "Franklin Park Zoo", "Boston", "MA", "42.302601", "-71.086731" },
+		{ "El Paso Zoo", "El Paso", "TX", "31.769125", "-106.44487" },
+		{ "Kansas City Zoo", "Kansas City", "MO", "39.007504", "-94.529625" },
+		{ "Bronx Zoo", "Bronx", "NY", "40.852905", "-73.872971" },
+		{ "Everglades", "Homestead", "FL", "25.39", "-80.58" }
+	};
+
+	private final Settings settings;
+	private final HttpServer gpsServer;
+	private final HttpServer rewardsServer;
+	private final HttpServer tripPricerServer;
+	private final ScheduledExecutorService scheduler;
+	private final List<ExecutorService> serverExecutors = new ArrayList<>();
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final byte[] attractions;
+	private final Map<String, AtomicInteger> userLocationCalls = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> errors = new ConcurrentHashMap<>();
+	private final AtomicInteger batchedPairs = new AtomicInteger();
+
+	public DownstreamStubServers() throws IOException {
+		this(new Settings());
+	}
+
+	public DownstreamStubServers(Settings settings) throws IOException {
+		this.settings = settings;
+		this.attractions = mapper.writeValueAsBytes(attractions(settings.seed, settings.attractionCount));
+		this.scheduler = Executors.newScheduledThreadPool(2, daemonThreadFactory("stub-delay"));
+		this.gpsServer = server("stub-gps");
+		this.rewardsServer = server("stub-rewards");
+		this.tripPricerServer = server("stub-trip-pricer");
+		gpsServer.createContext(USER_LOCATION, exchange -> handle(exchange, USER_LOCATION, this::userLocation));
+		gpsServer.createContext(ATTRACTIONS, exchange -> handle(exchange, ATTRACTIONS, query -> attractions));
+		rewardsServer.createContext(REWARD_POINTS, this::handleRewardPoints);
+		if(settings.batchEndpoint) {
+			rewardsServer.createContext(REWARD_POINTS_BATCH, this::handleRewardPointsBatch);
+		}
+		tripPricerServer.createContext(PRICE, exchange -> handle(exchange, PRICE, this::price));
+		gpsServer.start();
+		rewardsServer.start();
+		tripPricerServer.start();
+	}
+
+	/**
+	 * Points the downstream URLs of the properties at these stubs
+	 */
+	public TourGuideProperties configure(TourGuideProperties properties) {
+		properties.getDownstream().setGpsUrl(getGpsUrl());
+		properties.getDownstream().setRewardsUrl(getRewardsUrl());
+		properties.getDownstream().setTripPricerUrl(getTripPricerUrl());
+		return properties;
+	}
+
+	public String getGpsUrl() {
+		return url(gpsServer);
+	}
+
+	public String getRewardsUrl() {
+		return url(rewardsServer);
+	}
+
+	public String getTripPricerUrl() {
+		return url(tripPricerServer);
+	}
+
+	public int getRequests(String endpoint) {
+		return count(requests, endpoint);
+	}
+
+	public int getErrors(String endpoint) {
+		return count(errors, endpoint);
+	}
+
+	/**
+	 * @return the pairs received by the batch endpoint, over all its requests
+	 */
+	public int getBatchedPairs() {
+		return batchedPairs.get();
+	}
+
+	public static int expectedRewardPoints(UUID attractionId, UUID userId) {
+		return Math.floorMod(attractionId.hashCode() * 31 + userId.hashCode(), 1000) + 1;
+	}
+
+	private HttpServer server(String name) throws IOException {
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), settings.backlog);
+		ExecutorService executor = Executors.newFixedThreadPool(settings.serverThreads, daemonThreadFactory(name));
+		serverExecutors.add(executor);
+		server.setExecutor(executor);
+		return server;
+	}
+
+	private interface Responder {
+		byte[] respond(Map<String, String> query) throws IOException;
+	}
+
+	private void handle(HttpExchange exchange, String endpoint, Responder responder) throws IOException {
+		// Contexts match on prefix
+		if(!exchange.getRequestURI().getPath().equals(endpoint)) {
+			send(exchange, 404, null);
+			return;
+		}
+		String rawQuery = exchange.getRequestURI().getRawQuery();
+		byte[] body;
+		try {
+			body = responder.respond(parseQuery(exchange.getRequestURI()));
+		} catch (RuntimeException | IOException e) {
+			send(exchange, 400, null);
+			return;
+		}
+		reply(exchange, endpoint, rawQuery == null ? endpoint : endpoint + "?" + rawQuery, body);
+	}
+
+	private void handleRewardPoints(HttpExchange exchange) throws IOException {
+		handle(exchange, REWARD_POINTS, query -> String.valueOf(expectedRewardPoints(
+				UUID.fromString(query.get("attractionId")), UUID.fromString(query.get("userId")))).getBytes(StandardCharsets.UTF_8));
+	}
+
+	private void handleRewardPointsBatch(HttpExchange exchange) throws IOException {
+		List<Map<String, String>> pairs = mapper.readValue(exchange.getRequestBody(), new TypeReference<List<Map<String, String>>>(){ });
+		batchedPairs.addAndGet(pairs.size());
+		int[] rewardPoints = new int[pairs.size()];
+		for(int i = 0; i < rewardPoints.length; i++) {
+			rewardPoints[i] = expectedRewardPoints(UUID.fromString(pairs.get(i).get("attractionId")), UUID.fromString(pairs.get(i).get("userId")));
+		}
+		reply(exchange, REWARD_POINTS_BATCH, REWARD_POINTS_BATCH + pairs, mapper.writeValueAsBytes(rewardPoints));
+	}
+
+	/**
+	 * Answers after the delay drawn for the request, or fails it at the configured rate
+	 */
+	private void reply(HttpExchange exchange, String endpoint, String request, byte[] body) {
+		requests.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+		Random random = new Random(settings.seed * 31 + request.hashCode());
+		Endpoint behaviour = settings.endpoint(endpoint);
+		boolean error = random.nextDouble() < behaviour.errorRate;
+		if(error) {
+			errors.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+		}
+		long delayMicros = behaviour.latency.sampleMicros(random);
+		Runnable send = () -> {
+			try {
+				send(exchange, error ? 500 : 200, error ? null : body);
+			} catch (IOException e) {
+				exchange.close();
+			}
+		};
+		if(delayMicros <= 0) {
+			send.run();
+		} else {
+			scheduler.schedule(send, delayMicros, TimeUnit.MICROSECONDS);
+		}
+	}
+
+	private byte[] userLocation(Map<String, String> query) throws IOException {
+		String userId = UUID.fromString(query.get("userId")).toString();
+		// Each call for a user moves them, the same way in every run
+		int call = userLocationCalls.computeIfAbsent(userId, key -> new AtomicInteger()).getAndIncrement();
+		SplittableRandom random = new SplittableRandom(settings.seed * 31 + userId.hashCode() * 31L + call);
+		Map<String, Object> location = new LinkedHashMap<>();
+		location.put("latitude", -85.05112878 + random.nextDouble() * 2 * 85.05112878);
+		location.put("longitude", -180 + random.nextDouble() * 360);
+		Map<String, Object> visitedLocation = new LinkedHashMap<>();
+		visitedLocation.put("userId", userId);
+		visitedLocation.put("location", location);
+		visitedLocation.put("timeVisited", System.currentTimeMillis());
+		return mapper.writeValueAsBytes(visitedLocation);
+	}
+
+	private byte[] price(Map<String, String> query) throws IOException {
+		SplittableRandom random = new SplittableRandom(settings.seed * 31 + query.get("attractionId").hashCode());
+		int adults = Integer.parseInt(query.get("adults"));
+		int children = Integer.parseInt(query.get("children"));
+		int nightsStay = Integer.parseInt(query.get("nightsStay"));
+		int rewardsPoints = Integer.parseInt(query.get("rewardsPoints"));
+		List<Map<String, Object>> providers = new ArrayList<>(settings.providerCount);
+		for(int i = 0; i < settings.providerCount; i++) {
+			Map<String, Object> provider = new LinkedHashMap<>();
+			provider.put("name", "Provider " + i);
+			double nightPrice = 50 + random.nextInt(450);
+			provider.put("price", Math.max(0, nightPrice * nightsStay * (adults + children * 0.5) - rewardsPoints));
+			provider.put("tripId", new UUID(random.nextLong(), random.nextLong()).toString());
+			providers.add(provider);
+		}
+		return mapper.writeValueAsBytes(providers);
+	}
+
+	private static List<Map<String, Object>> attractions(long seed, int count) {
+		SplittableRandom random = new SplittableRandom(seed);
+		List<Map<String, Object>> attractions = new ArrayList<>(count);
+		for(int i = 0; i < count; i++) {
+			Map<String, Object> attraction = new LinkedHashMap<>();
+			if(i < KNOWN_ATTRACTIONS.length) {
+				attraction.put("attractionName", KNOWN_ATTRACTIONS[i][0]);
+				attraction.put("city", KNOWN_ATTRACTIONS[i][1]);
+				attraction.put("state", KNOWN_ATTRACTIONS[i][2]);
+				attraction.put("latitude", Double.parseDouble(KNOWN_ATTRACTIONS[i][3]));
+				attraction.put("longitude", Double.parseDouble(KNOWN_ATTRACTIONS[i][4]));
+			} else {
+				// Larger payloads: more attractions within the contiguous United States
+				attraction.put("attractionName", "Attraction " + i);
+				attraction.put("city", "City " + i);
+				attraction.put("state", "CA");
+				attraction.put("latitude", 25 + random.nextDouble() * 24);
+				attraction.put("longitude", -124 + random.nextDouble() * 57);
+			}
+			attraction.put("attractionId", new UUID(random.nextLong(), random.nextLong()).toString());
+			attractions.add(attraction);
+		}
+		return attractions;
+	}
+
+	private static void send(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+		if(body == null) {
+			exchange.sendResponseHeaders(statusCode, -1);
+			exchange.close();
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(statusCode, body.length);
+		try (OutputStream outputStream = exchange.getResponseBody()) {
+			outputStream.write(body);
+		}
+	}
+
+	private static Map<String, String> parseQuery(URI uri) {
+		Map<String, String> query = new HashMap<>();
+		if(uri.getRawQuery() == null) {
+			return query;
+		}
+		for(String parameter : uri.getRawQuery().split("&")) {
+			String[] keyValue = parameter.split("=", 2);
+			query.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+		}
+		return query;
+	}
+
+	private static int count(Map<String, AtomicInteger> counters, String endpoint) {
+		AtomicInteger counter = counters.get(endpoint);
+		return counter == null ? 0 : counter.get();
+	}
+
+	private static String url(HttpServer server) {
+		return "http://localhost:" + server.getAddress().getPort();
+	}
+
+	private static ThreadFactory daemonThreadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	@Override
+	public void close() {
+		gpsServer.stop(0);
+		rewardsServer.stop(0);
+		tripPricerServer.stop(0);
+		scheduler.shutdownNow();
+		serverExecutors.forEach(ExecutorService::shutdownNow);
+	}
+
+	/**
+	 * Delay added to an answer, in microseconds
+	 */
+	public interface Latency {
+
+		long sampleMicros(Random random);
+
+		static Latency none() {
+			return random -> 0;
+		}
+
+		static Latency fixed(long millis) {
+			return random -> TimeUnit.MILLISECONDS.toMicros(millis);
+		}
+
+		static Latency uniform(long minMillis, long maxMillis) {
+			return random -> TimeUnit.MILLISECONDS.toMicros(minMillis) + (long) (random.nextDouble() * TimeUnit.MILLISECONDS.toMicros(maxMillis - minMillis));
+		}
+
+		/**
+		 * Log-normal delays, the usual shape of service latencies: half of them under the median,
+		 * one in a hundred over the 99th percentile
+		 */
+		static Latency logNormal(double medianMillis, double p99Millis) {
+			// 2.326 is the 99th percentile of the standard normal distribution
+			double sigma = Math.log(p99Millis / medianMillis) / 2.326;
+			return random -> (long) (medianMillis * 1000 * Math.exp(sigma * random.nextGaussian()));
+		}
+	}
+
+	/**
+	 * Behaviour of one endpoint
+	 */
+	public static class Endpoint {
+		private final Latency latency;
+		private final double errorRate;
+
+		public Endpoint(Latency latency, double errorRate) {
+			this.latency = latency;
+			this.errorRate = errorRate;
+		}
+	}
+
+	/**
+	 * Behaviour of the stubs: every endpoint answers at once and never fails unless told otherwise
+	 */
+	public static class Settings {
+		private long seed = 20200101;
+		private int attractionCount = 26;
+		private int providerCount = 5;
+		private boolean batchEndpoint = true;
+		private int serverThreads = 8;
+		private int backlog = 1024;
+		private Endpoint defaultEndpoint = new Endpoint(Latency.none(), 0);
+		private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+		public Settings seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public Settings attractionCount(int attractionCount) {
+			this.attractionCount = attractionCount;
+			return this;
+		}
+
+		public Settings providerCount(int providerCount) {
+			this.providerCount = providerCount;
+			return this;
+		}
+
+		public Settings batchEndpoint(boolean batchEndpoint) {
+			this.batchEndpoint = batchEndpoint;
+			return this;
+		}
+
+		public Settings serverThreads(int serverThreads) {
+			this.serverThreads = serverThreads;
+			return this;
+		}
+
+		public Settings backlog(int backlog) {
+			this.backlog = backlog;
+			return this;
+		}
+
+		/**
+		 * Behaviour of every endpoint without one of its own
+		 */
+		public Settings allEndpoints(Latency latency, double errorRate) {
+			this.defaultEndpoint = new Endpoint(latency, errorRate);
+			return this;
+		}
+
+		public Settings endpoint(String endpoint, Latency latency, double errorRate) {
+			endpoints.put(endpoint, new Endpoint(latency, errorRate));
+			return this;
+		}
+
+		Endpoint endpoint(String endpoint) {
+			return endpoints.getOrDefault(endpoint, defaultEndpoint);
+		}
+	}
+}
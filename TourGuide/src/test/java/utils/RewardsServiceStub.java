@@ -0,0 +1,42 @@
+package utils;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * The Rewards service of DownstreamStubServers, answering at once and without errors,
+ * with or without its batch endpoint
+ */
+public class RewardsServiceStub implements AutoCloseable {
+
+	private final DownstreamStubServers servers;
+
+	public RewardsServiceStub(boolean batchEndpoint) throws IOException {
+		servers = new DownstreamStubServers(new DownstreamStubServers.Settings().batchEndpoint(batchEndpoint));
+	}
+
+	public static int expectedRewardPoints(UUID attractionId, UUID userId) {
+		return DownstreamStubServers.expectedRewardPoints(attractionId, userId);
+	}
+
+	public String getUrl() {
+		return servers.getRewardsUrl();
+	}
+
+	public int getSingleRequests() {
+		return servers.getRequests(DownstreamStubServers.REWARD_POINTS);
+	}
+
+	public int getBatchRequests() {
+		return servers.getRequests(DownstreamStubServers.REWARD_POINTS_BATCH);
+	}
+
+	public int getBatchedPairs() {
+		return servers.getBatchedPairs();
+	}
+
+	@Override
+	public void close() {
+		servers.close();
+	}
+}